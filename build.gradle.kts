@@ -52,6 +52,9 @@ tasks.withType<JavaCompile> {
 
 tasks.test {
     useJUnitPlatform()
+    // Keep composes parsed by the tests, and daemon sockets/tokens, out of ~/.lcod.
+    systemProperty("lcod.composeCache.dir", layout.buildDirectory.dir("tmp/lcod-compose-cache").get().asFile.absolutePath)
+    systemProperty("lcod.daemon.dir", layout.buildDirectory.dir("tmp/lcod-daemon").get().asFile.absolutePath)
     testLogging {
         events("passed", "skipped", "failed")
         exceptionFormat = org.gradle.api.tasks.testing.logging.TestExceptionFormat.FULL
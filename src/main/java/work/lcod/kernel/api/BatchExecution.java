@@ -0,0 +1,143 @@
+package work.lcod.kernel.api;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import work.lcod.kernel.runtime.ExecutionContext;
+
+/**
+ * Drives {@link LcodRunner#runBatch}: {@code workers} tasks pull inputs from a shared iterator, run them and
+ * hand results to the sink under a lock. In ordered mode results are re-sequenced and workers stop pulling
+ * once they are a few results ahead of the oldest pending one, which bounds the buffer. A failing input
+ * iterator or sink cancels the remaining runs and is rethrown.
+ */
+final class BatchExecution {
+    @FunctionalInterface
+    interface Item {
+        RunResult run(Object input, ExecutionContext.CancellationToken token);
+    }
+
+    private final Iterator<?> inputs;
+    private final BatchOptions options;
+    private final Consumer<RunResult> sink;
+    private final ExecutionContext.CancellationToken token;
+    private final Item item;
+    private final int window;
+    private final TreeMap<Integer, RunResult> pending = new TreeMap<>();
+    private int nextIndex;
+    private int nextEmit;
+    private long succeeded;
+    private long failed;
+    private long timedOut;
+    private Throwable failure;
+
+    BatchExecution(Iterator<?> inputs, BatchOptions options, Consumer<RunResult> sink,
+                   ExecutionContext.CancellationToken token, Item item) {
+        this.inputs = inputs;
+        this.options = options;
+        this.sink = sink;
+        this.token = token;
+        this.item = item;
+        this.window = Math.max(16, options.workers() * 4);
+    }
+
+    BatchStats run(Executor executor) {
+        long started = System.nanoTime();
+        int workers = options.workers();
+        var done = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        work();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                done.countDown();
+                fail(ex);
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            fail(ex);
+            Thread.currentThread().interrupt();
+            throw new ExecutionContext.KernelCancellationException("Batch interrupted");
+        }
+        synchronized (this) {
+            if (failure instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Batch failed: " + failure.getMessage(), failure);
+            }
+            return new BatchStats(succeeded + failed + timedOut, succeeded, failed, timedOut,
+                Duration.ofNanos(System.nanoTime() - started));
+        }
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Object input;
+                int index;
+                synchronized (this) {
+                    while (options.ordered() && failure == null && nextIndex - nextEmit >= window) {
+                        wait();
+                    }
+                    if (failure != null || token.isCancelled() || !inputs.hasNext()) {
+                        return;
+                    }
+                    input = inputs.next();
+                    index = nextIndex++;
+                }
+                var result = item.run(input, token.child()).withMetadata("batchIndex", index);
+                synchronized (this) {
+                    count(result);
+                    deliver(index, result);
+                }
+            }
+        } catch (Throwable err) {
+            fail(err);
+        }
+    }
+
+    private void count(RunResult result) {
+        switch (result.status()) {
+            case SUCCESS -> succeeded++;
+            case TIMEOUT -> timedOut++;
+            default -> failed++;
+        }
+    }
+
+    private void deliver(int index, RunResult result) {
+        if (!options.ordered()) {
+            sink.accept(result);
+            return;
+        }
+        pending.put(index, result);
+        RunResult next;
+        while ((next = pending.remove(nextEmit)) != null) {
+            nextEmit++;
+            sink.accept(next);
+        }
+        notifyAll();
+    }
+
+    private synchronized void fail(Throwable err) {
+        if (failure == null) {
+            failure = err;
+        }
+        token.cancel();
+        notifyAll();
+    }
+}
@@ -0,0 +1,25 @@
+package work.lcod.kernel.api;
+
+/**
+ * Tuning for {@link LcodRunner#runBatch}: how many inputs run at once and whether results are delivered in
+ * input order (buffering at most a few results per worker) or as soon as each run completes.
+ */
+public record BatchOptions(int workers, boolean ordered) {
+    public BatchOptions {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+    }
+
+    public static BatchOptions defaults() {
+        return new BatchOptions(Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    public BatchOptions withWorkers(int workers) {
+        return new BatchOptions(workers, ordered);
+    }
+
+    public BatchOptions withOrdered(boolean ordered) {
+        return new BatchOptions(workers, ordered);
+    }
+}
@@ -0,0 +1,26 @@
+package work.lcod.kernel.api;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregate outcome of an {@link LcodRunner#runBatch} call.
+ */
+public record BatchStats(long runs, long succeeded, long failed, long timedOut, Duration elapsed) {
+    public double throughputPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0d : runs * 1_000_000_000d / nanos;
+    }
+
+    public Map<String, Object> toSerializableMap() {
+        Map<String, Object> serializable = new LinkedHashMap<>();
+        serializable.put("runs", runs);
+        serializable.put("succeeded", succeeded);
+        serializable.put("failed", failed);
+        serializable.put("timedOut", timedOut);
+        serializable.put("elapsedMs", elapsed.toMillis());
+        serializable.put("throughputPerSecond", throughputPerSecond());
+        return serializable;
+    }
+}
@@ -0,0 +1,229 @@
+package work.lcod.kernel.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Minimal HTTP front-end for {@link LcodRunner} built on the JDK {@code com.sun.net.httpserver}.
+ *
+ * <ul>
+ *   <li>{@code POST /run} with {@code {"compose": "<path under composeRoot>", "input": {...}, "timeoutMs": 5000}}
+ *   runs the compose and streams the {@link RunResult} JSON back (200 success, 500 failure, 504 timeout).</li>
+ *   <li>{@code GET /health} reports the number of runs in flight.</li>
+ * </ul>
+ *
+ * Runs share the frozen base registry and the compiled compose cache; at most {@code maxConcurrentRuns} run at
+ * once and further requests are rejected with 503 instead of queueing.
+ */
+public final class LcodHttpServer implements AutoCloseable {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_REF = new TypeReference<>() {};
+
+    private final HttpServer server;
+    private final Path composeRoot;
+    private final Path cacheDirectory;
+    private final Duration defaultTimeout;
+    private final Duration maxTimeout;
+    private final int maxConcurrentRuns;
+    private final Semaphore permits;
+    private final LcodRunner runner = new LcodRunner();
+
+    private LcodHttpServer(Builder builder) throws IOException {
+        this.composeRoot = builder.composeRoot.toAbsolutePath().normalize();
+        this.cacheDirectory = builder.cacheDirectory == null ? null : builder.cacheDirectory.toAbsolutePath().normalize();
+        this.defaultTimeout = builder.defaultTimeout;
+        this.maxTimeout = builder.maxTimeout;
+        this.maxConcurrentRuns = builder.maxConcurrentRuns;
+        this.permits = new Semaphore(maxConcurrentRuns);
+        this.server = HttpServer.create(builder.address, 0);
+        server.createContext("/run", this::handleRun);
+        server.createContext("/health", this::handleHealth);
+        server.setExecutor(LcodRunner.asyncExecutor());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public LcodHttpServer start() {
+        server.start();
+        return this;
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleRun(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("POST required"));
+                return;
+            }
+            Map<String, Object> request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = JSON.readValue(body, MAP_REF);
+            } catch (IOException ex) {
+                respond(exchange, 400, error("Invalid JSON request: " + ex.getMessage()));
+                return;
+            }
+            if (request == null) {
+                request = Map.of();
+            }
+            Path compose = resolveCompose(request.get("compose"));
+            if (compose == null) {
+                respond(exchange, 400, error("compose must name a file under " + composeRoot));
+                return;
+            }
+            if (!Files.isRegularFile(compose)) {
+                respond(exchange, 404, error("Compose not found: " + composeRoot.relativize(compose)));
+                return;
+            }
+            Object input = request.get("input");
+            if (input != null && !(input instanceof Map<?, ?>)) {
+                respond(exchange, 400, error("input must be a JSON object"));
+                return;
+            }
+            if (!permits.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, error("Too many concurrent runs (limit " + maxConcurrentRuns + ")"));
+                return;
+            }
+            RunResult result;
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> payload = input == null ? Map.of() : (Map<String, Object>) input;
+                result = runner.run(configuration(compose, request.get("timeoutMs")), payload);
+            } finally {
+                permits.release();
+            }
+            int status = switch (result.status()) {
+                case SUCCESS, PLANNED -> 200;
+                case TIMEOUT -> 504;
+                case FAILURE -> 500;
+            };
+            respond(exchange, status, result.toSerializableMap());
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Map<String, Object> health = new LinkedHashMap<>();
+            health.put("status", "ok");
+            health.put("activeRuns", maxConcurrentRuns - permits.availablePermits());
+            health.put("maxConcurrentRuns", maxConcurrentRuns);
+            respond(exchange, 200, health);
+        }
+    }
+
+    private Path resolveCompose(Object raw) {
+        if (!(raw instanceof String value) || value.isBlank()) {
+            return null;
+        }
+        Path resolved = composeRoot.resolve(value).normalize();
+        return resolved.startsWith(composeRoot) ? resolved : null;
+    }
+
+    private LcodRunConfiguration configuration(Path compose, Object rawTimeout) {
+        Path workingDirectory = compose.getParent();
+        return LcodRunConfiguration.builder()
+            .composeTarget(ComposeTarget.forLocal(compose))
+            .workingDirectory(workingDirectory)
+            .lockFile(workingDirectory.resolve("lcp.lock"))
+            .cacheDirectory(cacheDirectory != null ? cacheDirectory : workingDirectory.resolve(".lcod/cache"))
+            .timeout(timeout(rawTimeout))
+            .build();
+    }
+
+    private Optional<Duration> timeout(Object rawTimeout) {
+        Duration requested = rawTimeout instanceof Number number && number.longValue() > 0
+            ? Duration.ofMillis(number.longValue())
+            : defaultTimeout;
+        if (requested == null) {
+            return Optional.ofNullable(maxTimeout);
+        }
+        return Optional.of(maxTimeout != null && requested.compareTo(maxTimeout) > 0 ? maxTimeout : requested);
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", "error");
+        body.put("error", message);
+        return body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        // Length 0 selects chunked encoding so the result is streamed as it is serialised.
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream output = exchange.getResponseBody()) {
+            JSON.writeValue(output, body);
+        }
+    }
+
+    public static final class Builder {
+        private InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        private Path composeRoot = Path.of(".");
+        private Path cacheDirectory;
+        private int maxConcurrentRuns = Runtime.getRuntime().availableProcessors();
+        private Duration defaultTimeout;
+        private Duration maxTimeout;
+
+        public Builder address(InetSocketAddress address) {
+            this.address = Objects.requireNonNull(address, "address");
+            return this;
+        }
+
+        public Builder composeRoot(Path composeRoot) {
+            this.composeRoot = Objects.requireNonNull(composeRoot, "composeRoot");
+            return this;
+        }
+
+        public Builder cacheDirectory(Path cacheDirectory) {
+            this.cacheDirectory = cacheDirectory;
+            return this;
+        }
+
+        public Builder maxConcurrentRuns(int maxConcurrentRuns) {
+            if (maxConcurrentRuns < 1) {
+                throw new IllegalArgumentException("maxConcurrentRuns must be at least 1");
+            }
+            this.maxConcurrentRuns = maxConcurrentRuns;
+            return this;
+        }
+
+        public Builder defaultTimeout(Duration defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+            return this;
+        }
+
+        public Builder maxTimeout(Duration maxTimeout) {
+            this.maxTimeout = maxTimeout;
+            return this;
+        }
+
+        public LcodHttpServer build() throws IOException {
+            return new LcodHttpServer(this);
+        }
+    }
+}
@@ -17,7 +17,9 @@ public record LcodRunConfiguration(
     boolean forceResolve,
     String inputPayload,
     Optional<Duration> timeout,
-    LogLevel logLevel
+    LogLevel logLevel,
+    Duration remoteCacheTtl,
+    boolean offline
 ) {
     public LcodRunConfiguration {
         Objects.requireNonNull(composeTarget, "composeTarget");
@@ -28,6 +30,7 @@ public record LcodRunConfiguration(
         Objects.requireNonNull(inputPayload, "inputPayload");
         Objects.requireNonNull(timeout, "timeout");
         Objects.requireNonNull(logLevel, "logLevel");
+        Objects.requireNonNull(remoteCacheTtl, "remoteCacheTtl");
     }
 
     public static Builder builder() {
@@ -44,6 +47,8 @@ public record LcodRunConfiguration(
         private String inputPayload = "{}";
         private Optional<Duration> timeout = Optional.empty();
         private LogLevel logLevel = LogLevel.FATAL;
+        private Duration remoteCacheTtl = Duration.ZERO;
+        private boolean offline;
 
         public Builder composeTarget(ComposeTarget composeTarget) {
             this.composeTarget = composeTarget;
@@ -90,6 +95,22 @@ public record LcodRunConfiguration(
             return this;
         }
 
+        /**
+         * How long a cached remote compose is used before it is revalidated (zero revalidates on every run).
+         */
+        public Builder remoteCacheTtl(Duration remoteCacheTtl) {
+            this.remoteCacheTtl = remoteCacheTtl;
+            return this;
+        }
+
+        /**
+         * Serve remote composes from the cache only, failing when they were never downloaded.
+         */
+        public Builder offline(boolean offline) {
+            this.offline = offline;
+            return this;
+        }
+
         public LcodRunConfiguration build() {
             return new LcodRunConfiguration(
                 composeTarget,
@@ -100,7 +121,9 @@ public record LcodRunConfiguration(
                 forceResolve,
                 inputPayload,
                 timeout,
-                logLevel
+                logLevel,
+                remoteCacheTtl,
+                offline
             );
         }
     }
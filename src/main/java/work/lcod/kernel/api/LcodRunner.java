@@ -6,15 +6,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import work.lcod.kernel.runtime.KernelRegistry;
 import work.lcod.kernel.runtime.ComposeLoader;
+import work.lcod.kernel.runtime.ComposePlan;
 import work.lcod.kernel.runtime.ComposeRunner;
 import work.lcod.kernel.runtime.ExecutionContext;
 import work.lcod.kernel.runtime.Registry;
+import work.lcod.kernel.runtime.ResultCache;
+import work.lcod.kernel.runtime.VirtualThreads;
 
 /**
  * Public entry point for embedding the Java kernel.
@@ -22,16 +37,125 @@ import work.lcod.kernel.runtime.Registry;
 public final class LcodRunner {
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final TypeReference<Map<String, Object>> MAP_REF = new TypeReference<>() {};
+    private static final ScheduledThreadPoolExecutor DEADLINES = createDeadlineScheduler();
+    private static final ExecutorService ASYNC_EXECUTOR = VirtualThreads.newExecutor("lcod-run");
 
     public RunResult run(LcodRunConfiguration configuration) {
-        var started = Instant.now();
+        return run(configuration, new ExecutionContext.CancellationToken());
+    }
+
+    /**
+     * Runs the compose on the shared async executor (virtual threads when the JVM provides them).
+     */
+    public CompletableFuture<RunResult> runAsync(LcodRunConfiguration configuration) {
+        return runAsync(configuration, ASYNC_EXECUTOR);
+    }
+
+    /**
+     * Runs the compose on {@code executor}. Cancelling the returned future cancels the run: pending work is
+     * skipped and running steps observe the cancellation through the run's {@link ExecutionContext.CancellationToken}.
+     */
+    public CompletableFuture<RunResult> runAsync(LcodRunConfiguration configuration, Executor executor) {
+        var token = new ExecutionContext.CancellationToken();
+        var future = new CompletableFuture<RunResult>();
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                token.cancel();
+            }
+        });
         try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(run(configuration, token));
+                } catch (Throwable error) {
+                    future.completeExceptionally(error);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the compose once per input, loading and compiling it a single time. Inputs are JSON strings or
+     * already-parsed maps ({@link LcodRunConfiguration#inputPayload()} is ignored); each run gets its own
+     * registry overlay, state and timeout. Results are handed to {@code sink} one at a time, in input order or
+     * as they complete depending on {@code options}; each carries its input position as {@code batchIndex}.
+     */
+    public BatchStats runBatch(LcodRunConfiguration configuration, Iterable<?> inputs, BatchOptions options,
+                               Consumer<RunResult> sink) {
+        return runBatch(configuration, inputs.iterator(), options, sink);
+    }
+
+    public BatchStats runBatch(LcodRunConfiguration configuration, Stream<?> inputs, BatchOptions options,
+                               Consumer<RunResult> sink) {
+        try (inputs) {
+            return runBatch(configuration, inputs.iterator(), options, sink);
+        }
+    }
+
+    private BatchStats runBatch(LcodRunConfiguration configuration, Iterator<?> inputs, BatchOptions options,
+                                Consumer<RunResult> sink) {
+        var token = new ExecutionContext.CancellationToken();
+        ComposePlan plan;
+        try {
+            prepareFilesystem(configuration);
+            var ctx = new ExecutionContext(KernelRegistry.create(), configuration.workingDirectory(), token);
+            plan = ctx.interruptibly(() -> loadCompose(configuration));
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to load compose " + configuration.composeTarget().display() + ": " + ex.getMessage(), ex);
+        }
+        var batch = new BatchExecution(inputs, options, sink, token, (input, runToken) ->
+            run(configuration, runToken, ctx -> ComposeRunner.runSteps(ctx, plan, initialState(input), Map.of())));
+        return batch.run(ASYNC_EXECUTOR);
+    }
+
+    /**
+     * Same as {@link #run(LcodRunConfiguration)} with an already-parsed input instead of
+     * {@link LcodRunConfiguration#inputPayload()}.
+     */
+    RunResult run(LcodRunConfiguration configuration, Map<String, Object> input) {
+        return run(configuration, new ExecutionContext.CancellationToken(), ctx -> {
+            prepareFilesystem(configuration);
+            var plan = ctx.interruptibly(() -> loadCompose(configuration));
+            return ComposeRunner.runSteps(ctx, plan, initialState(input), Map.of());
+        });
+    }
+
+    static Executor asyncExecutor() {
+        return ASYNC_EXECUTOR;
+    }
+
+    private RunResult run(LcodRunConfiguration configuration, ExecutionContext.CancellationToken token) {
+        return run(configuration, token, ctx -> {
             prepareFilesystem(configuration);
-            var steps = loadCompose(configuration);
+            var plan = ctx.interruptibly(() -> loadCompose(configuration));
             var initialState = parseInitialState(configuration.inputPayload());
+            return ComposeRunner.runSteps(ctx, plan, initialState, Map.of());
+        });
+    }
+
+    private RunResult run(LcodRunConfiguration configuration, ExecutionContext.CancellationToken token, RunBody body) {
+        var started = Instant.now();
+        var timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = configuration.timeout()
+            .filter(timeout -> !timeout.isZero() && !timeout.isNegative())
+            .map(timeout -> DEADLINES.schedule(() -> {
+                timedOut.set(true);
+                token.cancel();
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS))
+            .orElse(null);
+        try {
             var registry = KernelRegistry.create();
-            var ctx = new ExecutionContext(registry, configuration.workingDirectory());
-            var finalState = ComposeRunner.runSteps(ctx, steps, initialState, Map.of());
+            var ctx = new ExecutionContext(registry, configuration.workingDirectory(), token);
+            ctx.setResultCache(ResultCache.withDirectory(configuration.cacheDirectory().resolve("results")));
+            var finalState = body.run(ctx);
 
             var metadata = new LinkedHashMap<String, Object>();
             metadata.put("compose", configuration.composeTarget().display());
@@ -44,6 +168,11 @@ public final class LcodRunner {
         } catch (Exception ex) {
             var errorMeta = new LinkedHashMap<String, Object>();
             errorMeta.put("compose", configuration.composeTarget().display());
+            if (timedOut.get()) {
+                var timeout = configuration.timeout().orElseThrow();
+                errorMeta.put("timeoutMs", timeout.toMillis());
+                return RunResult.timeout("Execution timed out after " + timeout.toMillis() + " ms", errorMeta, started);
+            }
             if (ex.getMessage() != null && !ex.getMessage().isBlank()) {
                 errorMeta.put("error", ex.getMessage());
             }
@@ -51,9 +180,18 @@ public final class LcodRunner {
                 ex.printStackTrace();
             }
             return RunResult.failure(ex.getMessage(), errorMeta, started);
+        } finally {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
         }
     }
 
+    @FunctionalInterface
+    private interface RunBody {
+        Map<String, Object> run(ExecutionContext ctx) throws Exception;
+    }
+
     public RunResult runToJson(LcodRunConfiguration configuration) {
         var result = run(configuration);
         try {
@@ -72,10 +210,27 @@ public final class LcodRunner {
         }
     }
 
-    private List<Map<String, Object>> loadCompose(LcodRunConfiguration configuration) {
+    private ComposePlan loadCompose(LcodRunConfiguration configuration) {
         return configuration.composeTarget().remoteUri()
-            .map(ComposeLoader::loadFromHttp)
-            .orElseGet(() -> ComposeLoader.loadFromLocalFile(configuration.composeTarget().localPath().orElseThrow()));
+            .map(uri -> ComposePlan.compile(ComposeLoader.loadFromHttp(
+                uri,
+                configuration.cacheDirectory(),
+                configuration.forceResolve() ? Duration.ZERO : configuration.remoteCacheTtl(),
+                configuration.offline()
+            )))
+            .orElseGet(() -> ComposeLoader.loadPlanFromLocalFile(
+                configuration.composeTarget().localPath().orElseThrow(),
+                configuration.cacheDirectory()
+            ));
+    }
+
+    private Map<String, Object> initialState(Object input) {
+        if (input instanceof Map<?, ?> map) {
+            var state = new LinkedHashMap<String, Object>();
+            map.forEach((key, value) -> state.put(String.valueOf(key), value));
+            return state;
+        }
+        return parseInitialState(input == null ? null : String.valueOf(input));
     }
 
     private Map<String, Object> parseInitialState(String payload) {
@@ -90,6 +245,16 @@ public final class LcodRunner {
         }
     }
 
+    private static ScheduledThreadPoolExecutor createDeadlineScheduler() {
+        var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "lcod-run-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
     private Registry bootstrapRegistry() {
         return KernelRegistry.create();
     }
@@ -27,6 +27,12 @@ public record RunResult(Status status, Map<String, Object> metadata, Instant sta
         return new RunResult(Status.FAILURE, meta, startedAt, Instant.now());
     }
 
+    public static RunResult timeout(String message, Map<String, Object> metadata, Instant startedAt) {
+        Map<String, Object> meta = new LinkedHashMap<>(metadata);
+        meta.putIfAbsent("error", message);
+        return new RunResult(Status.TIMEOUT, meta, startedAt, Instant.now());
+    }
+
     public static RunResult planned(Map<String, Object> metadata, Instant startedAt) {
         return new RunResult(Status.PLANNED, metadata, startedAt, Instant.now());
     }
@@ -37,6 +43,12 @@ public record RunResult(Status status, Map<String, Object> metadata, Instant sta
         return new RunResult(status, meta, startedAt, finishedAt);
     }
 
+    public RunResult withMetadata(String key, Object value) {
+        Map<String, Object> meta = new LinkedHashMap<>(metadata);
+        meta.put(key, value);
+        return new RunResult(status, meta, startedAt, finishedAt);
+    }
+
     public Map<String, Object> toSerializableMap() {
         Map<String, Object> serializable = new LinkedHashMap<>();
         serializable.put("status", status.name().toLowerCase());
@@ -57,7 +69,8 @@ public record RunResult(Status status, Map<String, Object> metadata, Instant sta
     public enum Status {
         SUCCESS(0),
         FAILURE(1),
-        PLANNED(0);
+        PLANNED(0),
+        TIMEOUT(124);
 
         private final int exitCode;
 
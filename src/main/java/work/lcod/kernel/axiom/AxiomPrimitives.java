@@ -48,7 +48,7 @@ public final class AxiomPrimitives {
         return result;
     }
 
-    private static Object fsReadFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) {
+    private static Object fsReadFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         String pathValue = input != null && input.get("path") != null ? String.valueOf(input.get("path")) : null;
         if (pathValue == null || pathValue.isBlank()) {
             throw new IllegalArgumentException("fs/read-file requires `path`");
@@ -56,7 +56,7 @@ public final class AxiomPrimitives {
         String encoding = input != null && input.get("encoding") != null ? String.valueOf(input.get("encoding")) : "utf-8";
         Path resolved = resolve(ctx, pathValue);
         try {
-            byte[] bytes = Files.readAllBytes(resolved);
+            byte[] bytes = ctx.interruptibly(() -> Files.readAllBytes(resolved));
             Map<String, Object> result = new LinkedHashMap<>();
             if ("utf-8".equalsIgnoreCase(encoding)) {
                 result.put("data", new String(bytes, StandardCharsets.UTF_8));
@@ -0,0 +1,266 @@
+package work.lcod.kernel.cli;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import work.lcod.kernel.runtime.AtomicFiles;
+
+/**
+ * Id index over a JSONL component catalogue. The index is an open-addressing hash table from component id to the
+ * byte range of the entry's line, stored in a {@code <catalogue>.idx} sidecar and memory-mapped on later runs, so
+ * a lookup hashes the id, probes the table and parses that single line. The sidecar records the catalogue's size
+ * and modification time and is rebuilt when either changes or its table does not check out; when it cannot be
+ * written the table is kept in memory.
+ */
+final class CatalogueIndex {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final int MAGIC = 0x4c434958; // "LCIX"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4 + 4;
+    private static final int RECORD_BYTES = 8 + 4 + 4 + 4;
+
+    private final Path catalogue;
+    private final FileTime modified;
+    private final long size;
+    private final ByteBuffer table;
+    private final int slotCount;
+    private final int entryCount;
+    private final Map<String, Map<String, Object>> parsed = new ConcurrentHashMap<>();
+
+    private CatalogueIndex(Path catalogue, FileTime modified, long size, ByteBuffer table) {
+        this.catalogue = catalogue;
+        this.modified = modified;
+        this.size = size;
+        this.table = table;
+        this.slotCount = table.getInt(24);
+        this.entryCount = table.getInt(28);
+    }
+
+    /**
+     * Opens the index for {@code catalogue}, reusing its sidecar when it matches the catalogue on disk.
+     */
+    static CatalogueIndex open(Path catalogue) throws IOException {
+        Path path = catalogue.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        Path sidecar = sidecarFor(path);
+        ByteBuffer mapped = mapSidecar(sidecar, attrs);
+        if (mapped != null) {
+            return new CatalogueIndex(path, attrs.lastModifiedTime(), attrs.size(), mapped);
+        }
+        byte[] table = build(Files.readAllBytes(path), attrs);
+        writeSidecar(sidecar, table);
+        return new CatalogueIndex(path, attrs.lastModifiedTime(), attrs.size(), ByteBuffer.wrap(table));
+    }
+
+    boolean matches(BasicFileAttributes attrs) {
+        return modified.equals(attrs.lastModifiedTime()) && size == attrs.size();
+    }
+
+    /**
+     * Returns the catalogue entry for {@code id}, or {@code null} when the catalogue does not list it.
+     */
+    Map<String, Object> get(String id) throws IOException {
+        Map<String, Object> cached = parsed.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        int record = find(id);
+        if (record < 0) {
+            return null;
+        }
+        int base = HEADER_BYTES + slotCount * 4 + record * RECORD_BYTES;
+        long offset = table.getLong(base);
+        int length = table.getInt(base + 8);
+        ByteBuffer line = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(catalogue, StandardOpenOption.READ)) {
+            while (line.hasRemaining()) {
+                if (channel.read(line, offset + line.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        Map<String, Object> entry = JSON.readValue(line.array(), 0, line.position(), MAP_TYPE);
+        parsed.put(id, entry);
+        return entry;
+    }
+
+    private int find(String id) {
+        if (entryCount == 0) {
+            return -1;
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int mask = slotCount - 1;
+        int poolStart = HEADER_BYTES + slotCount * 4 + entryCount * RECORD_BYTES;
+        for (int slot = id.hashCode() & mask, probes = 0; probes < slotCount; slot = (slot + 1) & mask, probes++) {
+            int reference = table.getInt(HEADER_BYTES + slot * 4);
+            if (reference == 0) {
+                return -1;
+            }
+            int record = reference - 1;
+            int base = HEADER_BYTES + slotCount * 4 + record * RECORD_BYTES;
+            int idOffset = table.getInt(base + 12);
+            int idLength = table.getInt(base + 16);
+            if (idLength == key.length && idEquals(poolStart + idOffset, key)) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    private boolean idEquals(int position, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (table.get(position + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] build(byte[] content, BasicFileAttributes attrs) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<long[]> ranges = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int start = 0;
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') {
+                end++;
+            }
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8).trim();
+            if (!line.isEmpty()) {
+                try {
+                    Map<String, Object> entry = JSON.readValue(line, MAP_TYPE);
+                    // First entry wins, as the sequential scan did.
+                    if (entry.get("id") instanceof String id && seen.add(id)) {
+                        ids.add(id);
+                        ranges.add(new long[] {start, end - start});
+                    }
+                } catch (IOException ex) {
+                    // ignore malformed line and continue
+                }
+            }
+            start = end + 1;
+        }
+
+        int slotCount = Integer.highestOneBit(Math.max(4, ids.size() * 2) - 1) << 1;
+        int[] slots = new int[slotCount];
+        var pool = new ByteArrayOutputStream();
+        int[] idOffsets = new int[ids.size()];
+        int[] idLengths = new int[ids.size()];
+        for (int record = 0; record < ids.size(); record++) {
+            String id = ids.get(record);
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            idOffsets[record] = pool.size();
+            idLengths[record] = bytes.length;
+            pool.write(bytes);
+            int slot = id.hashCode() & (slotCount - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            slots[slot] = record + 1;
+        }
+
+        var bytes = new ByteArrayOutputStream(HEADER_BYTES + slotCount * 4 + ids.size() * RECORD_BYTES + pool.size());
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(attrs.size());
+            out.writeLong(attrs.lastModifiedTime().toMillis());
+            out.writeInt(slotCount);
+            out.writeInt(ids.size());
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+            for (int record = 0; record < ids.size(); record++) {
+                out.writeLong(ranges.get(record)[0]);
+                out.writeInt((int) ranges.get(record)[1]);
+                out.writeInt(idOffsets[record]);
+                out.writeInt(idLengths[record]);
+            }
+            pool.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ByteBuffer mapSidecar(Path sidecar, BasicFileAttributes attrs) {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT
+                || buffer.getLong(8) != attrs.size() || buffer.getLong(16) != attrs.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            int slotCount = buffer.getInt(24);
+            int entryCount = buffer.getInt(28);
+            long minimum = HEADER_BYTES + (long) slotCount * 4 + (long) entryCount * RECORD_BYTES;
+            if (slotCount <= 0 || Integer.bitCount(slotCount) != 1 || entryCount < 0 || entryCount > slotCount
+                || minimum > channel.size()) {
+                return null;
+            }
+            return isConsistent(buffer, slotCount, entryCount, channel.size() - minimum, attrs.size()) ? buffer : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that every slot points at a record and every record points inside the id pool and the catalogue, so a
+     * damaged sidecar is rebuilt instead of failing lookups.
+     */
+    private static boolean isConsistent(ByteBuffer buffer, int slotCount, int entryCount, long poolSize, long catalogueSize) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            int reference = buffer.getInt(HEADER_BYTES + slot * 4);
+            if (reference < 0 || reference > entryCount) {
+                return false;
+            }
+        }
+        int records = HEADER_BYTES + slotCount * 4;
+        for (int record = 0; record < entryCount; record++) {
+            int base = records + record * RECORD_BYTES;
+            long offset = buffer.getLong(base);
+            int length = buffer.getInt(base + 8);
+            int idOffset = buffer.getInt(base + 12);
+            int idLength = buffer.getInt(base + 16);
+            if (offset < 0 || length < 0 || offset + length > catalogueSize
+                || idOffset < 0 || idLength < 0 || (long) idOffset + idLength > poolSize) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeSidecar(Path sidecar, byte[] table) {
+        try {
+            AtomicFiles.write(sidecar, table);
+        } catch (IOException ex) {
+            // read-only catalogue location: keep the in-memory table for this process
+        }
+    }
+
+    private static Path sidecarFor(Path catalogue) {
+        return catalogue.resolveSibling(catalogue.getFileName() + ".idx");
+    }
+}
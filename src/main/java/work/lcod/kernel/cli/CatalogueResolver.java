@@ -0,0 +1,351 @@
+package work.lcod.kernel.cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import org.tomlj.Toml;
+import org.tomlj.TomlArray;
+import org.tomlj.TomlParseResult;
+import work.lcod.kernel.runtime.AtomicFiles;
+import work.lcod.kernel.runtime.VirtualThreads;
+
+/**
+ * Catalogue fallback used by {@code lcod-run} when the resolver cannot locate a component. Catalogues are
+ * looked up through a {@link CatalogueIndex}, kept per file version. Resolving a component downloads its
+ * compose and {@code lcp.toml} concurrently, then prefetches the catalogue entries listed under {@code [deps] requires} the same way; at
+ * most {@code lcod.catalogue.downloads} (default 8) downloads run at once and each file is written atomically
+ * into {@code <cache>/components/<key>/<version>/}. Entry paths are relative to the entry's origin repository
+ * unless they are absolute {@code http(s)} URLs.
+ */
+final class CatalogueResolver {
+    private static final String DEFAULT_COMPONENTS_REPO = "https://github.com/lcod-team/lcod-components";
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+    private static final Semaphore DOWNLOADS = new Semaphore(Math.max(1, Integer.getInteger("lcod.catalogue.downloads", 8)));
+    private static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("lcod-catalogue");
+    private static final Map<Path, CatalogueIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private CatalogueResolver() {}
+
+    /**
+     * Returns the compose path for {@code componentId}, downloading it (and prefetching its dependencies) into
+     * {@code cacheRoot} when the catalogue does not ship it locally.
+     */
+    static Path resolve(Path cataloguePath, Path cacheRoot, String componentId) throws IOException, InterruptedException {
+        CatalogueIndex index = index(cataloguePath);
+        Map<String, Object> entry = index.get(componentId);
+        if (entry == null) {
+            throw new IOException("Component " + componentId + " not found in default catalogue");
+        }
+        Optional<Path> manifestBase = catalogueBaseDir(cataloguePath);
+        Optional<Path> localCompose = resolveLocalManifestFile(manifestBase, entry.get("compose"));
+        if (localCompose.isPresent()) {
+            return localCompose.get();
+        }
+        var fetch = new Fetch(index, manifestBase, cacheRoot);
+        return join(fetch.component(componentId, entry));
+    }
+
+    /**
+     * Downloads {@code url} into {@code target} through a temporary file, so readers never see partial content.
+     */
+    static void download(String url, Path target) throws IOException, InterruptedException {
+        DOWNLOADS.acquire();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+            HttpResponse<byte[]> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            int status = response.statusCode();
+            if (status < 200 || status >= 300) {
+                throw new IOException("Failed to download " + url + ": HTTP " + status);
+            }
+            AtomicFiles.write(target, response.body());
+        } finally {
+            DOWNLOADS.release();
+        }
+    }
+
+    private static final class Fetch {
+        private final CatalogueIndex index;
+        private final Optional<Path> manifestBase;
+        private final Path cacheRoot;
+        private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+        Fetch(CatalogueIndex index, Optional<Path> manifestBase, Path cacheRoot) {
+            this.index = index;
+            this.manifestBase = manifestBase;
+            this.cacheRoot = cacheRoot;
+        }
+
+        /**
+         * Completes with the compose path once the component and its catalogued dependencies are on disk.
+         * Dependency failures are ignored; they are only a prefetch and the resolver reports them when used.
+         */
+        CompletableFuture<Path> component(String componentId, Map<String, Object> entry) {
+            visited.add(componentId);
+            ComponentParts parts = splitComponentId(componentId);
+            Path componentDir = cacheRoot
+                .resolve("components")
+                .resolve(sanitizeComponentKey(parts.key()))
+                .resolve(parts.version());
+
+            Path composePath = componentDir.resolve("compose.yaml");
+            CompletableFuture<Void> compose = async(() -> {
+                if (!Files.exists(composePath)) {
+                    String composeUrl = buildComponentUrl(entry, entry.get("compose"));
+                    if (composeUrl == null || composeUrl.isBlank()) {
+                        throw new IOException("Catalogue entry for " + componentId + " missing compose path");
+                    }
+                    download(composeUrl, composePath);
+                }
+            });
+
+            Path lcpTarget = componentDir.resolve("lcp.toml");
+            String lcpPath = extractLcpPath(entry.get("lcp"));
+            CompletableFuture<Void> lcp = lcpPath == null || lcpPath.isBlank()
+                ? CompletableFuture.completedFuture(null)
+                : async(() -> {
+                    if (Files.exists(lcpTarget)) {
+                        return;
+                    }
+                    Optional<Path> localLcp = resolveLocalManifestFile(manifestBase, lcpPath);
+                    if (localLcp.isPresent()) {
+                        AtomicFiles.write(lcpTarget, Files.readAllBytes(localLcp.get()));
+                        return;
+                    }
+                    String lcpUrl = buildComponentUrl(entry, lcpPath);
+                    if (lcpUrl != null && !lcpUrl.isBlank()) {
+                        download(lcpUrl, lcpTarget);
+                    }
+                });
+            CompletableFuture<Void> dependencies = lcp.thenCompose(ignored -> {
+                List<CompletableFuture<Path>> prefetches = new ArrayList<>();
+                for (String dependency : requires(lcpTarget)) {
+                    Map<String, Object> dependencyEntry = lookup(dependency);
+                    if (dependencyEntry != null && visited.add(dependency)) {
+                        prefetches.add(component(dependency, dependencyEntry).exceptionally(err -> null));
+                    }
+                }
+                return CompletableFuture.allOf(prefetches.toArray(CompletableFuture[]::new));
+            });
+            return CompletableFuture.allOf(compose, dependencies)
+                .thenApply(ignored -> composePath.toAbsolutePath().normalize());
+        }
+
+        private Map<String, Object> lookup(String componentId) {
+            try {
+                return index.get(componentId);
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+    }
+
+    private interface IoTask {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private static CompletableFuture<Void> async(IoTask task) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            }
+        }, EXECUTOR);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (cause instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw ex;
+        }
+    }
+
+    private static List<String> requires(Path lcpPath) {
+        if (!Files.isRegularFile(lcpPath)) {
+            return List.of();
+        }
+        try {
+            TomlParseResult manifest = Toml.parse(Files.readString(lcpPath));
+            TomlArray requires = manifest.hasErrors() ? null : manifest.getArray("deps.requires");
+            if (requires == null) {
+                return List.of();
+            }
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < requires.size(); i++) {
+                if (requires.get(i) instanceof String id && !id.isBlank()) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } catch (IOException | RuntimeException ex) {
+            return List.of();
+        }
+    }
+
+    private static CatalogueIndex index(Path cataloguePath) throws IOException {
+        Path key = cataloguePath.toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        CatalogueIndex cached = INDEXES.get(key);
+        if (cached != null && cached.matches(attrs)) {
+            return cached;
+        }
+        CatalogueIndex index = CatalogueIndex.open(key);
+        INDEXES.put(key, index);
+        return index;
+    }
+
+
+    private static ComponentParts splitComponentId(String componentId) {
+        if (!componentId.startsWith("lcod://")) {
+            throw new IllegalArgumentException("component id must start with lcod://");
+        }
+        String trimmed = componentId.substring("lcod://".length());
+        int at = trimmed.indexOf('@');
+        if (at < 0) {
+            if (trimmed.isBlank()) {
+                throw new IllegalArgumentException("component id missing identifier");
+            }
+            return new ComponentParts(trimmed, "0.0.0");
+        }
+        String key = trimmed.substring(0, at);
+        String version = trimmed.substring(at + 1);
+        if (key.isBlank()) {
+            throw new IllegalArgumentException("component id missing identifier");
+        }
+        if (version == null || version.isBlank()) {
+            version = "0.0.0";
+        }
+        return new ComponentParts(key, version);
+    }
+
+    private static String sanitizeComponentKey(String key) {
+        return key.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static Optional<Path> catalogueBaseDir(Path manifest) {
+        Path parent = manifest.getParent();
+        if (parent == null) {
+            return Optional.empty();
+        }
+        Path resolvedParent = parent;
+        Path fileName = parent.getFileName();
+        if (fileName != null && "registry".equalsIgnoreCase(fileName.toString())) {
+            Path grand = parent.getParent();
+            if (grand != null) {
+                resolvedParent = grand;
+            }
+        }
+        return Optional.of(resolvedParent);
+    }
+
+    private static Optional<Path> resolveLocalManifestFile(Optional<Path> baseDir, Object manifestEntry) {
+        if (baseDir.isEmpty() || manifestEntry == null) {
+            return Optional.empty();
+        }
+        String raw = manifestEntry.toString().trim();
+        if (raw.isEmpty()) {
+            return Optional.empty();
+        }
+        String cleaned = raw.startsWith("./") ? raw.substring(2) : raw;
+        Path candidate = baseDir.get().resolve(cleaned).normalize();
+        return Files.isRegularFile(candidate) ? Optional.of(candidate) : Optional.empty();
+    }
+
+    private static String buildComponentUrl(Map<String, Object> entry, Object manifestPath) {
+        if (manifestPath == null) {
+            return null;
+        }
+        String pathValue = manifestPath.toString().trim();
+        if (pathValue.isEmpty()) {
+            return null;
+        }
+        if (pathValue.startsWith("http://") || pathValue.startsWith("https://")) {
+            return pathValue;
+        }
+        if (pathValue.startsWith("./")) {
+            pathValue = pathValue.substring(2);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, Object> origin = entry.containsKey("origin") && entry.get("origin") instanceof Map
+            ? (Map<String, Object>) entry.get("origin")
+            : Map.of();
+        String sourceRepo = Optional.ofNullable(origin.get("source_repo"))
+            .or(() -> Optional.ofNullable(origin.get("sourceRepo")))
+            .map(Object::toString)
+            .filter(s -> !s.isBlank())
+            .orElse(DEFAULT_COMPONENTS_REPO);
+        String commit = Optional.ofNullable(origin.get("commit"))
+            .map(Object::toString)
+            .filter(s -> !s.isBlank())
+            .orElse("main");
+        String rawBase = repoToRawBase(sourceRepo, commit);
+        return rawBase + pathValue;
+    }
+
+    private static String extractLcpPath(Object field) {
+        if (field instanceof String str) {
+            return str;
+        }
+        if (field instanceof Map<?, ?> map) {
+            Object pathValue = map.get("path");
+            if (pathValue instanceof String str && !str.isBlank()) {
+                return str;
+            }
+            Object urlValue = map.get("url");
+            if (urlValue instanceof String str && !str.isBlank()) {
+                return str;
+            }
+        }
+        return null;
+    }
+
+    private static String repoToRawBase(String repo, String commit) {
+        if (repo == null || repo.isBlank()) {
+            throw new IllegalArgumentException("Missing repository URL in catalogue entry");
+        }
+        String normalized = repo;
+        if (normalized.startsWith("https://github.com/")) {
+            normalized = normalized.substring("https://github.com/".length());
+        }
+        normalized = normalized.replaceAll("/+$", "");
+        if (!normalized.contains("/")) {
+            throw new IllegalArgumentException("Unsupported repository URL: " + repo);
+        }
+        return "https://raw.githubusercontent.com/" + normalized + "/" + commit + "/";
+    }
+
+    private record ComponentParts(String key, String version) {}
+
+}
@@ -0,0 +1,366 @@
+package work.lcod.kernel.cli;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Pattern;
+import picocli.CommandLine;
+import work.lcod.kernel.runtime.KernelRegistry;
+import work.lcod.kernel.runtime.VirtualThreads;
+
+/**
+ * Warm {@code lcod-run} daemon ({@code --serve}) and its thin client ({@code --daemon}). The runtime bootstrap,
+ * base registry and JS engine are initialised once; each connection carries one JSON request line (the
+ * client's options with absolute paths, its working directory and an inlined input payload) and receives one
+ * JSON response line with the exit code and the captured stdout/stderr. The daemon reads environment variables
+ * from its own process, not from the client.
+ *
+ * <p>Requests run with the daemon user's full privileges, so only that user may submit them: the Unix socket is
+ * created owner-only inside an owner-only directory, and a TCP daemon writes a random token to an owner-only file
+ * under {@code ~/.lcod/daemon} that clients must echo back. An existing socket path is only replaced when it is
+ * a stale socket nobody answers on.
+ */
+final class LcodDaemon {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final Pattern TCP_ADDRESS = Pattern.compile("^(?:(.+):)?(\\d{1,5})$");
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+
+    private LcodDaemon() {}
+
+    /**
+     * Either a Unix domain socket path or a loopback TCP endpoint.
+     */
+    record Address(Path socketPath, InetSocketAddress tcp) {
+        static Address parse(String raw) {
+            if (raw == null || raw.isBlank()) {
+                return new Address(daemonDirectory().resolve("lcod-run.sock"), null);
+            }
+            var matcher = TCP_ADDRESS.matcher(raw.trim());
+            if (matcher.matches()) {
+                String host = matcher.group(1);
+                int port = Integer.parseInt(matcher.group(2));
+                InetAddress bind = InetAddress.getLoopbackAddress();
+                return new Address(null, host == null ? new InetSocketAddress(bind, port) : new InetSocketAddress(host, port));
+            }
+            return new Address(Path.of(raw).toAbsolutePath().normalize(), null);
+        }
+
+        SocketAddress socketAddress() {
+            return socketPath != null ? UnixDomainSocketAddress.of(socketPath) : tcp;
+        }
+
+        /**
+         * Where a TCP daemon keeps the token its clients must send; Unix sockets rely on file permissions instead.
+         */
+        Path tokenFile() {
+            return socketPath != null ? null : daemonDirectory().resolve("lcod-run-" + tcp.getPort() + ".token");
+        }
+
+        @Override
+        public String toString() {
+            return socketPath != null ? socketPath.toString() : tcp.getHostString() + ":" + tcp.getPort();
+        }
+    }
+
+    /**
+     * {@code ~/.lcod}, or {@code -Dlcod.daemon.dir}.
+     */
+    static Path stateDirectory() {
+        String override = System.getProperty("lcod.daemon.dir");
+        return override != null && !override.isBlank()
+            ? Path.of(override).toAbsolutePath().normalize()
+            : Path.of(System.getProperty("user.home"), ".lcod");
+    }
+
+    /**
+     * The owner-only directory holding the default socket and the TCP token files.
+     */
+    static Path daemonDirectory() {
+        return stateDirectory().resolve("daemon");
+    }
+
+    static int serve(Address address, PrintStream log) throws IOException {
+        // Pay the runtime extraction, registry bootstrap and class loading before the first request.
+        KernelRegistry.create();
+        try (Server server = Server.open(address)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+            log.printf("lcod-run daemon listening on %s%n", server.address());
+            server.run();
+        }
+        return 0;
+    }
+
+    /**
+     * A bound daemon socket; {@link #run()} serves connections until {@link #close()}.
+     */
+    static final class Server implements AutoCloseable {
+        private final Address address;
+        private final ServerSocketChannel channel;
+        private final String token;
+        private final ExecutorService workers = VirtualThreads.newExecutor("lcod-daemon");
+
+        private Server(Address address, ServerSocketChannel channel, String token) {
+            this.address = address;
+            this.channel = channel;
+            this.token = token;
+        }
+
+        static Server open(Address address) throws IOException {
+            if (address.socketPath() != null) {
+                prepareSocketPath(address.socketPath());
+                var channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                try {
+                    channel.bind(address.socketAddress());
+                    restrictToOwner(address.socketPath());
+                } catch (IOException | RuntimeException ex) {
+                    channel.close();
+                    throw ex;
+                }
+                return new Server(address, channel, null);
+            }
+            if (address.tcp().isUnresolved() || !address.tcp().getAddress().isLoopbackAddress()) {
+                throw new IllegalArgumentException("--serve only binds to loopback addresses: " + address);
+            }
+            var channel = ServerSocketChannel.open();
+            try {
+                channel.bind(address.socketAddress());
+                var bound = new Address(null, (InetSocketAddress) channel.getLocalAddress());
+                return new Server(bound, channel, writeToken(bound.tokenFile()));
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * The bound address (with the actual port when listening on TCP port 0).
+         */
+        Address address() {
+            return address;
+        }
+
+        void run() throws IOException {
+            try {
+                while (true) {
+                    SocketChannel client = channel.accept();
+                    workers.execute(() -> handle(client, token));
+                }
+            } catch (ClosedChannelException ex) {
+                // close() was called
+            }
+        }
+
+        @Override
+        public void close() {
+            workers.shutdownNow();
+            try {
+                channel.close();
+                Files.deleteIfExists(address.socketPath() != null ? address.socketPath() : address.tokenFile());
+            } catch (IOException ignored) {
+                // best-effort cleanup
+            }
+        }
+    }
+
+    /**
+     * Makes {@code socketPath} free to bind: its parent exists and is owner-only when this daemon creates it (or
+     * owns it, for the default location), and an existing socket is removed only when no daemon answers on it.
+     */
+    private static void prepareSocketPath(Path socketPath) throws IOException {
+        Path parent = socketPath.getParent();
+        if (parent.equals(daemonDirectory()) || !Files.isDirectory(parent)) {
+            ownerOnlyDirectory(parent);
+        }
+        if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (!isSocket(socketPath)) {
+            throw new IOException(socketPath + " exists and is not a socket");
+        }
+        try (var probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(socketPath));
+            throw new IOException("an lcod-run daemon is already listening on " + socketPath);
+        } catch (ConnectException ex) {
+            // stale socket left by a daemon that did not shut down cleanly
+        }
+        Files.deleteIfExists(socketPath);
+    }
+
+    private static boolean isSocket(Path path) throws IOException {
+        try {
+            int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;
+        } catch (UnsupportedOperationException | IllegalArgumentException ex) {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+        }
+    }
+
+    private static void ownerOnlyDirectory(Path directory) throws IOException {
+        try {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+            Files.setPosixFilePermissions(directory, OWNER_ONLY_DIRECTORY);
+        } catch (UnsupportedOperationException ignored) {
+            // not a POSIX file system; the user's home directory permissions apply
+            Files.createDirectories(directory);
+        }
+    }
+
+    private static String writeToken(Path tokenFile) throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        String token = HexFormat.of().formatHex(random);
+        ownerOnlyDirectory(tokenFile.getParent());
+        Path temp = Files.createTempFile(tokenFile.getParent(), tokenFile.getFileName().toString(), ".tmp");
+        try {
+            restrictToOwner(temp);
+            Files.writeString(temp, token, StandardCharsets.UTF_8);
+            Files.move(temp, tokenFile, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return token;
+    }
+
+    private static void restrictToOwner(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, OWNER_ONLY);
+        } catch (UnsupportedOperationException ignored) {
+            // not a POSIX file system; the user's home directory permissions apply
+        }
+    }
+
+    static int forward(Address address, Map<String, Object> request, PrintStream out, PrintStream err) throws IOException {
+        SocketChannel channel;
+        try {
+            channel = address.socketPath() != null
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+            channel.connect(address.socketAddress());
+        } catch (IOException ex) {
+            throw new IOException("No lcod-run daemon listening on " + address + " (start one with --serve): " + ex.getMessage(), ex);
+        }
+        try (channel) {
+            Map<String, Object> message = request;
+            if (address.tokenFile() != null) {
+                message = new LinkedHashMap<>(request);
+                message.put("token", readToken(address));
+            }
+            OutputStream output = Channels.newOutputStream(channel);
+            output.write(JSON.writeValueAsBytes(message));
+            output.write('\n');
+            output.flush();
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("lcod-run daemon closed the connection without a response");
+            }
+            Map<String, Object> response = JSON.readValue(line, MAP_TYPE);
+            out.print(response.getOrDefault("stdout", ""));
+            err.print(response.getOrDefault("stderr", ""));
+            out.flush();
+            err.flush();
+            return response.get("exitCode") instanceof Number code ? code.intValue() : 1;
+        }
+    }
+
+    private static String readToken(Address address) throws IOException {
+        try {
+            return Files.readString(address.tokenFile(), StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new IOException("Cannot read the lcod-run daemon token " + address.tokenFile() + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static void handle(SocketChannel channel, String token) {
+        try (channel) {
+            var reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (line == null || line.isBlank()) {
+                return;
+            }
+            Map<String, Object> request = JSON.readValue(line, MAP_TYPE);
+            Map<String, Object> response = authorised(request, token) ? execute(request) : rejected();
+            OutputStream output = Channels.newOutputStream(channel);
+            output.write(JSON.writeValueAsBytes(response));
+            output.write('\n');
+            output.flush();
+        } catch (IOException ignored) {
+            // the client went away; nothing to report to
+        }
+    }
+
+    private static boolean authorised(Map<String, Object> request, String token) {
+        if (token == null) {
+            return true;
+        }
+        return request.get("token") instanceof String sent
+            && MessageDigest.isEqual(sent.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> rejected() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("exitCode", 1);
+        response.put("stdout", "");
+        response.put("stderr", "lcod-run daemon: missing or invalid token\n");
+        return response;
+    }
+
+    private static Map<String, Object> execute(Map<String, Object> request) {
+        var stdout = new ByteArrayOutputStream();
+        var stderr = new ByteArrayOutputStream();
+        int exitCode;
+        try (var out = new PrintStream(stdout, true, StandardCharsets.UTF_8);
+             var err = new PrintStream(stderr, true, StandardCharsets.UTF_8)) {
+            try {
+                exitCode = LcodRunCommand.fromDaemonRequest(request, out, err).call();
+            } catch (CommandLine.ParameterException ex) {
+                err.println(ex.getMessage());
+                exitCode = 2;
+            } catch (Exception ex) {
+                String message = ex.getMessage();
+                err.println(message == null || message.isBlank() ? ex.getClass().getSimpleName() : message);
+                if (Boolean.getBoolean("lcod.debug")) {
+                    ex.printStackTrace(err);
+                }
+                exitCode = 1;
+            }
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("exitCode", exitCode);
+        response.put("stdout", stdout.toString(StandardCharsets.UTF_8));
+        response.put("stderr", stderr.toString(StandardCharsets.UTF_8));
+        return response;
+    }
+}
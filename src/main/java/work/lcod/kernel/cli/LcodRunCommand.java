@@ -1,16 +1,13 @@
 package work.lcod.kernel.cli;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -39,6 +36,7 @@ import work.lcod.kernel.api.RunResult;
 import work.lcod.kernel.shared.DurationParser;
 import work.lcod.kernel.runtime.ExecutionContext;
 import work.lcod.kernel.runtime.KernelRegistry;
+import work.lcod.kernel.runtime.ManifestCache;
 import work.lcod.kernel.runtime.StepMeta;
 
 @CommandLine.Command(
@@ -52,9 +50,6 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final ObjectWriter JSON_WRITER = JSON.writerWithDefaultPrettyPrinter();
     private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
-    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
-        .followRedirects(HttpClient.Redirect.NORMAL)
-        .build();
     private static final Duration CATALOGUE_TTL = Duration.ofHours(24);
     private static final String[] WORKSPACE_MANIFEST_FILES = new String[] {
         "registry/components.std.jsonl",
@@ -64,14 +59,12 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
     };
     private static final String DEFAULT_CATALOGUE_URL =
         "https://raw.githubusercontent.com/lcod-team/lcod-components/main/registry/components.std.jsonl";
-    private static final String DEFAULT_COMPONENTS_REPO = "https://github.com/lcod-team/lcod-components";
     private static final String RESOLVER_COMPONENT_ID = "lcod://resolver/locate_component@0.1.0";
     private static final StepMeta EMPTY_STEP_META = new StepMeta(Map.of(), Map.of(), null);
     private record ManifestMetadata(List<String> inputs, List<String> outputs) {}
 
     @CommandLine.Option(
         names = {"-c", "--compose"},
-        required = true,
         description = "Compose file path or HTTP(S) URL.",
         arity = "1..*"
     )
@@ -125,8 +118,49 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
     )
     private String timeoutRaw;
 
+    @CommandLine.Option(
+        names = "--remote-cache-ttl",
+        description = "Reuse downloaded remote composes for this long before revalidating them (e.g. 10m; default: always revalidate).",
+        defaultValue = CommandLine.Option.NULL_VALUE
+    )
+    private String remoteCacheTtlRaw;
+
+    @CommandLine.Option(
+        names = "--offline",
+        description = "Only use remote composes already in the cache."
+    )
+    private boolean offline;
+
+    @CommandLine.Option(
+        names = "--serve",
+        arity = "0..1",
+        fallbackValue = "",
+        paramLabel = "ADDRESS",
+        description = "Run as a warm daemon on a Unix socket path or localhost:PORT (default: ~/.lcod/daemon/lcod-run.sock).",
+        defaultValue = CommandLine.Option.NULL_VALUE
+    )
+    private String serveAddress;
+
+    @CommandLine.Option(
+        names = "--daemon",
+        arity = "0..1",
+        fallbackValue = "",
+        paramLabel = "ADDRESS",
+        description = "Forward this invocation to a daemon started with --serve (same address syntax).",
+        defaultValue = CommandLine.Option.NULL_VALUE
+    )
+    private String daemonAddress;
+
+    private PrintStream out = System.out;
+    private PrintStream err = System.err;
+    // The client's working directory when running inside a daemon; null means this process's own.
+    private Path clientDirectory;
+
     @Override
     public Integer call() throws Exception {
+        if (serveAddress != null) {
+            return LcodDaemon.serve(LcodDaemon.Address.parse(serveAddress), err);
+        }
         if (composePaths == null || composePaths.isEmpty()) {
             throw new CommandLine.ParameterException(new CommandLine(this), "At least one --compose value is required.");
         }
@@ -139,7 +173,11 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
         }
 
         String payload = loadInputPayload();
+        if (daemonAddress != null) {
+            return LcodDaemon.forward(LcodDaemon.Address.parse(daemonAddress), toDaemonRequest(payload), out, err);
+        }
         Optional<Duration> timeout = DurationParser.parse(timeoutRaw);
+        Duration remoteCacheTtl = DurationParser.parse(remoteCacheTtlRaw).orElse(Duration.ZERO);
         LogLevel logLevel = resolveLogLevel();
         CacheMode cacheMode = determineCacheMode();
 
@@ -185,18 +223,68 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
                 .inputPayload(effectivePayload)
                 .timeout(timeout)
                 .logLevel(logLevel)
+                .remoteCacheTtl(remoteCacheTtl)
+                .offline(offline)
                 .build();
 
             RunResult result = runner.run(configuration);
             exitCode = Math.max(exitCode, result.status().exitCode());
 
             Map<String, Object> publicPayload = projectOutputs(result, manifest);
-            System.out.println(JSON_WRITER.writeValueAsString(publicPayload));
+            out.println(JSON_WRITER.writeValueAsString(publicPayload));
         }
 
         return exitCode;
     }
 
+    /**
+     * Captures this invocation for a daemon: paths are made absolute, the input payload is inlined and the
+     * working directory is sent along so the daemon resolves workspaces as this process would.
+     */
+    private Map<String, Object> toDaemonRequest(String payload) {
+        List<String> composes = new ArrayList<>();
+        for (String compose : composePaths) {
+            boolean remote = compose.startsWith("lcod://") || compose.startsWith("http://") || compose.startsWith("https://");
+            composes.add(remote ? compose : Paths.get(compose).toAbsolutePath().normalize().toString());
+        }
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("compose", composes);
+        request.put("input", payload);
+        request.put("resolve", forceResolve);
+        request.put("lock", lock == null ? null : Paths.get(lock).toAbsolutePath().normalize().toString());
+        request.put("cacheDir", cacheDir == null ? null : Paths.get(cacheDir).toAbsolutePath().normalize().toString());
+        request.put("globalCache", globalCache);
+        request.put("logLevel", logLevelRaw);
+        request.put("timeout", timeoutRaw);
+        request.put("remoteCacheTtl", remoteCacheTtlRaw);
+        request.put("offline", offline);
+        request.put("cwd", currentDirectory().toString());
+        return request;
+    }
+
+    /**
+     * Rebuilds the command a client captured with {@link #toDaemonRequest(String)}, writing to the given streams.
+     */
+    static LcodRunCommand fromDaemonRequest(Map<?, ?> request, PrintStream out, PrintStream err) {
+        var command = new LcodRunCommand();
+        if (request.get("compose") instanceof List<?> composes) {
+            composes.forEach(compose -> command.composePaths.add(String.valueOf(compose)));
+        }
+        command.input = request.get("input") == null ? null : String.valueOf(request.get("input"));
+        command.forceResolve = Boolean.TRUE.equals(request.get("resolve"));
+        command.lock = request.get("lock") == null ? null : String.valueOf(request.get("lock"));
+        command.cacheDir = request.get("cacheDir") == null ? null : String.valueOf(request.get("cacheDir"));
+        command.globalCache = Boolean.TRUE.equals(request.get("globalCache"));
+        command.logLevelRaw = request.get("logLevel") == null ? null : String.valueOf(request.get("logLevel"));
+        command.timeoutRaw = request.get("timeout") == null ? null : String.valueOf(request.get("timeout"));
+        command.remoteCacheTtlRaw = request.get("remoteCacheTtl") == null ? null : String.valueOf(request.get("remoteCacheTtl"));
+        command.offline = Boolean.TRUE.equals(request.get("offline"));
+        command.clientDirectory = request.get("cwd") == null ? null : Paths.get(String.valueOf(request.get("cwd"))).toAbsolutePath().normalize();
+        command.out = out;
+        command.err = err;
+        return command;
+    }
+
     private ComposeTarget detectComposeTarget(String value) {
         if (value.startsWith("lcod://")) {
             Path localPath = resolveComponentToLocalPath(value);
@@ -205,7 +293,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
         if (value.startsWith("http://") || value.startsWith("https://")) {
             return ComposeTarget.forRemote(URI.create(value));
         }
-        Path path = Paths.get(value).toAbsolutePath().normalize();
+        Path path = resolvePath(value);
         if (!Files.exists(path)) {
             throw new CommandLine.ParameterException(
                 new CommandLine(this),
@@ -217,7 +305,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
 
     private Path determineWorkingDirectory(ComposeTarget target) {
         if (target.isRemote()) {
-            return Paths.get("").toAbsolutePath();
+            return currentDirectory();
         }
         Path local = target.localPath().orElseThrow();
         Path parent = local.getParent();
@@ -228,7 +316,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
 
     private Path resolveLockPath(Path workingDir) {
         if (lock != null) {
-            return Paths.get(lock).toAbsolutePath().normalize();
+            return resolvePath(lock);
         }
         return workingDir.resolve("lcp.lock").toAbsolutePath().normalize();
     }
@@ -242,7 +330,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
 
     private Path resolveCacheDirectory(Path workingDir) {
         if (cacheDir != null) {
-            return Paths.get(cacheDir).toAbsolutePath().normalize();
+            return resolvePath(cacheDir);
         }
         if (globalCache) {
             Path home = Path.of(System.getProperty("user.home"), ".lcod", "cache");
@@ -265,7 +353,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
             validateJsonPayload(trimmed);
             return trimmed;
         }
-        Path path = Paths.get(input).toAbsolutePath().normalize();
+        Path path = resolvePath(input);
         try {
             String content = Files.readString(path, StandardCharsets.UTF_8);
             validateJsonPayload(content);
@@ -320,7 +408,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
             if (!Files.exists(fallbackPath)) {
                 throw new IOException("Compose file missing after fallback: " + fallbackPath);
             }
-            System.err.printf("Resolved %s via catalogue fallback at %s%n", componentId, fallbackPath);
+            err.printf("Resolved %s via catalogue fallback at %s%n", componentId, fallbackPath);
             return fallbackPath;
         } catch (Exception ex) {
             fallbackFailure = ex;
@@ -353,7 +441,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
                 }
             }
         } catch (Exception ex) {
-            System.err.printf("resolver locate_component failed for %s: %s%n", componentId, ex.getMessage());
+            err.printf("resolver locate_component failed for %s: %s%n", componentId, ex.getMessage());
         }
         return null;
     }
@@ -374,81 +462,11 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
     }
 
     private Path fallbackResolveComponent(String componentId) throws IOException, InterruptedException {
-        ComponentParts parts = splitComponentId(componentId);
         Path cacheRoot = cacheRootDirectory();
         Files.createDirectories(cacheRoot);
 
         Path cataloguePath = ensureCatalogueCached(cacheRoot);
-        Map<String, Object> entry = findCatalogueEntry(cataloguePath, componentId);
-        if (entry == null) {
-            throw new IOException("Component " + componentId + " not found in default catalogue");
-        }
-        Optional<Path> manifestBase = catalogueBaseDir(cataloguePath);
-        Optional<Path> localCompose = resolveLocalManifestFile(manifestBase, entry.get("compose"));
-        if (localCompose.isPresent()) {
-            return localCompose.get();
-        }
-
-        String safeKey = sanitizeComponentKey(parts.key());
-        Path componentDir = cacheRoot
-            .resolve("components")
-            .resolve(safeKey)
-            .resolve(parts.version());
-        Files.createDirectories(componentDir);
-
-        Path composePath = componentDir.resolve("compose.yaml");
-        if (!Files.exists(composePath)) {
-            String composeUrl = buildComponentUrl(entry, entry.get("compose"));
-            if (composeUrl == null || composeUrl.isBlank()) {
-                throw new IOException("Catalogue entry for " + componentId + " missing compose path");
-            }
-            downloadUrlToPath(composeUrl, composePath);
-        }
-
-        String lcpPath = extractLcpPath(entry.get("lcp"));
-        if (lcpPath != null && !lcpPath.isBlank()) {
-            Path target = componentDir.resolve("lcp.toml");
-            if (!Files.exists(target)) {
-                Optional<Path> localLcp = resolveLocalManifestFile(manifestBase, lcpPath);
-                if (localLcp.isPresent()) {
-                    Files.copy(localLcp.get(), target);
-                } else {
-                    String lcpUrl = buildComponentUrl(entry, lcpPath);
-                    if (lcpUrl != null && !lcpUrl.isBlank()) {
-                        downloadUrlToPath(lcpUrl, target);
-                    }
-                }
-            }
-        }
-
-        return composePath.toAbsolutePath().normalize();
-    }
-
-    private ComponentParts splitComponentId(String componentId) {
-        if (!componentId.startsWith("lcod://")) {
-            throw new IllegalArgumentException("component id must start with lcod://");
-        }
-        String trimmed = componentId.substring("lcod://".length());
-        int at = trimmed.indexOf('@');
-        if (at < 0) {
-            if (trimmed.isBlank()) {
-                throw new IllegalArgumentException("component id missing identifier");
-            }
-            return new ComponentParts(trimmed, "0.0.0");
-        }
-        String key = trimmed.substring(0, at);
-        String version = trimmed.substring(at + 1);
-        if (key.isBlank()) {
-            throw new IllegalArgumentException("component id missing identifier");
-        }
-        if (version == null || version.isBlank()) {
-            version = "0.0.0";
-        }
-        return new ComponentParts(key, version);
-    }
-
-    private String sanitizeComponentKey(String key) {
-        return key.replaceAll("[^A-Za-z0-9]", "_");
+        return CatalogueResolver.resolve(cataloguePath, cacheRoot, componentId);
     }
 
     private Path cacheRootDirectory() {
@@ -475,35 +493,6 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
         return Optional.empty();
     }
 
-    private Optional<Path> catalogueBaseDir(Path manifest) {
-        Path parent = manifest.getParent();
-        if (parent == null) {
-            return Optional.empty();
-        }
-        Path resolvedParent = parent;
-        Path fileName = parent.getFileName();
-        if (fileName != null && "registry".equalsIgnoreCase(fileName.toString())) {
-            Path grand = parent.getParent();
-            if (grand != null) {
-                resolvedParent = grand;
-            }
-        }
-        return Optional.of(resolvedParent);
-    }
-
-    private Optional<Path> resolveLocalManifestFile(Optional<Path> baseDir, Object manifestEntry) {
-        if (baseDir.isEmpty() || manifestEntry == null) {
-            return Optional.empty();
-        }
-        String raw = manifestEntry.toString().trim();
-        if (raw.isEmpty()) {
-            return Optional.empty();
-        }
-        String cleaned = raw.startsWith("./") ? raw.substring(2) : raw;
-        Path candidate = baseDir.get().resolve(cleaned).normalize();
-        return Files.isRegularFile(candidate) ? Optional.of(candidate) : Optional.empty();
-    }
-
     private List<String> splitEnvPaths(String raw) {
         if (raw == null || raw.isBlank()) {
             return List.of();
@@ -525,10 +514,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
         LinkedHashSet<Path> candidates = new LinkedHashSet<>();
 
         LinkedHashSet<String> roots = new LinkedHashSet<>();
-        String cwd = System.getProperty("user.dir");
-        if (cwd != null && !cwd.isBlank()) {
-            roots.add(cwd);
-        }
+        roots.add(currentDirectory().toString());
         for (String envVar : List.of("LCOD_WORKSPACE_PATHS", "LCOD_COMPONENTS_PATHS", "LCOD_COMPONENTS_PATH")) {
             String raw = System.getenv(envVar);
             if (raw != null && !raw.isBlank()) {
@@ -597,115 +583,26 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
             }
         }
         if (refresh) {
-            downloadUrlToPath(DEFAULT_CATALOGUE_URL, cataloguePath);
+            CatalogueResolver.download(DEFAULT_CATALOGUE_URL, cataloguePath);
         }
         return cataloguePath;
     }
 
-    private Map<String, Object> findCatalogueEntry(Path cataloguePath, String componentId) throws IOException {
-        try (BufferedReader reader = Files.newBufferedReader(cataloguePath, StandardCharsets.UTF_8)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) {
-                    continue;
-                }
-                try {
-                    Map<String, Object> entry = JSON.readValue(trimmed, MAP_TYPE);
-                    if (componentId.equals(entry.get("id"))) {
-                        return entry;
-                    }
-                } catch (IOException ex) {
-                    // ignore malformed line and continue
-                }
-            }
-        }
-        return null;
-    }
-
-    private String buildComponentUrl(Map<String, Object> entry, Object manifestPath) {
-        if (manifestPath == null) {
-            return null;
-        }
-        String pathValue = manifestPath.toString().trim();
-        if (pathValue.isEmpty()) {
-            return null;
-        }
-        if (pathValue.startsWith("./")) {
-            pathValue = pathValue.substring(2);
-        }
-        @SuppressWarnings("unchecked")
-        Map<String, Object> origin = entry.containsKey("origin") && entry.get("origin") instanceof Map
-            ? (Map<String, Object>) entry.get("origin")
-            : Map.of();
-        String sourceRepo = Optional.ofNullable(origin.get("source_repo"))
-            .or(() -> Optional.ofNullable(origin.get("sourceRepo")))
-            .map(Object::toString)
-            .filter(s -> !s.isBlank())
-            .orElse(DEFAULT_COMPONENTS_REPO);
-        String commit = Optional.ofNullable(origin.get("commit"))
-            .map(Object::toString)
-            .filter(s -> !s.isBlank())
-            .orElse("main");
-        String rawBase = repoToRawBase(sourceRepo, commit);
-        return rawBase + pathValue;
-    }
-
-    private String extractLcpPath(Object field) {
-        if (field instanceof String str) {
-            return str;
-        }
-        if (field instanceof Map<?, ?> map) {
-            Object pathValue = map.get("path");
-            if (pathValue instanceof String str && !str.isBlank()) {
-                return str;
-            }
-            Object urlValue = map.get("url");
-            if (urlValue instanceof String str && !str.isBlank()) {
-                return str;
-            }
+    private Path normalizePath(Object value) {
+        if (value instanceof String str && !str.isBlank()) {
+            return resolvePath(str);
         }
         return null;
     }
 
-    private String repoToRawBase(String repo, String commit) {
-        if (repo == null || repo.isBlank()) {
-            throw new IllegalArgumentException("Missing repository URL in catalogue entry");
-        }
-        String normalized = repo;
-        if (normalized.startsWith("https://github.com/")) {
-            normalized = normalized.substring("https://github.com/".length());
-        }
-        normalized = normalized.replaceAll("/+$", "");
-        if (!normalized.contains("/")) {
-            throw new IllegalArgumentException("Unsupported repository URL: " + repo);
-        }
-        return "https://raw.githubusercontent.com/" + normalized + "/" + commit + "/";
-    }
-
-    private void downloadUrlToPath(String url, Path target) throws IOException, InterruptedException {
-        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
-        HttpResponse<byte[]> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
-        int status = response.statusCode();
-        if (status < 200 || status >= 300) {
-            throw new IOException("Failed to download " + url + ": HTTP " + status);
-        }
-        Path parent = target.getParent();
-        if (parent != null) {
-            Files.createDirectories(parent);
-        }
-        Files.write(target, response.body());
+    private Path currentDirectory() {
+        return clientDirectory != null ? clientDirectory : Paths.get("").toAbsolutePath().normalize();
     }
 
-    private Path normalizePath(Object value) {
-        if (value instanceof String str && !str.isBlank()) {
-            return Paths.get(str).toAbsolutePath().normalize();
-        }
-        return null;
+    private Path resolvePath(String value) {
+        return currentDirectory().resolve(value).toAbsolutePath().normalize();
     }
 
-    private record ComponentParts(String key, String version) {}
-
     private LogLevel resolveLogLevel() {
         String candidate = logLevelRaw;
         if (candidate == null || candidate.isBlank()) {
@@ -767,17 +664,7 @@ final class LcodRunCommand implements java.util.concurrent.Callable<Integer> {
     }
 
     private Path findWorkspaceRoot(Path start) {
-        if (start == null) {
-            return null;
-        }
-        Path current = start.toAbsolutePath();
-        for (int depth = 0; depth < 12 && current != null; depth++) {
-            if (Files.isRegularFile(current.resolve("workspace.lcp.toml"))) {
-                return current;
-            }
-            current = current.getParent();
-        }
-        return null;
+        return ManifestCache.findWorkspaceRoot(start, 12);
     }
 
     private Map<String, Object> projectOutputs(RunResult result, Optional<ManifestMetadata> manifest) {
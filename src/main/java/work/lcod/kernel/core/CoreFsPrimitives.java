@@ -47,7 +47,7 @@ public final class CoreFsPrimitives {
         return registry;
     }
 
-    private static Object writeFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws IOException {
+    private static Object writeFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         Path target = resolvePath(ctx, input.get("path"));
         if (target == null) {
             throw new IllegalArgumentException("path is required");
@@ -60,7 +60,7 @@ public final class CoreFsPrimitives {
             }
         }
         byte[] data = decodeData(String.valueOf(input.getOrDefault("data", "")), OptionalString.of(input.get("encoding")));
-        Files.write(target, data, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+        ctx.interruptibly(() -> Files.write(target, data, java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.TRUNCATE_EXISTING));
         Instant mtime = Files.getLastModifiedTime(target).toInstant();
         return Map.of(
             "bytesWritten", data.length,
@@ -69,12 +69,12 @@ public final class CoreFsPrimitives {
         );
     }
 
-    private static Object readFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws IOException {
+    private static Object readFile(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         Path target = resolvePath(ctx, input.get("path"));
         if (target == null) {
             throw new IllegalArgumentException("path is required");
         }
-        byte[] data = Files.readAllBytes(target);
+        byte[] data = ctx.interruptibly(() -> Files.readAllBytes(target));
         String encoding = OptionalString.of(input.get("encoding")).orElse("utf-8").toLowerCase(Locale.ROOT);
         String encoded = encodeData(data, encoding);
         var attrs = Files.readAttributes(target, BasicFileAttributes.class);
@@ -86,7 +86,7 @@ public final class CoreFsPrimitives {
         return result;
     }
 
-    private static Object listDir(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws IOException {
+    private static Object listDir(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         Path dir = resolvePath(ctx, input.get("path"));
         if (dir == null) {
             throw new IllegalArgumentException("path is required");
@@ -98,7 +98,8 @@ public final class CoreFsPrimitives {
 
         List<Map<String, Object>> entries = new ArrayList<>();
         if (recursive) {
-            Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), maxDepth, new ListingVisitor(dir, includeHidden, includeStats, entries));
+            var visitor = new ListingVisitor(dir, includeHidden, includeStats, entries, ctx.cancellationToken());
+            ctx.interruptibly(() -> Files.walkFileTree(dir, EnumSet.noneOf(FileVisitOption.class), maxDepth, visitor));
         } else {
             try (var stream = Files.list(dir)) {
                 for (Path path : stream.collect(Collectors.toList())) {
@@ -227,16 +228,22 @@ public final class CoreFsPrimitives {
         private final boolean includeHidden;
         private final boolean includeStats;
         private final List<Map<String, Object>> entries;
+        private final ExecutionContext.CancellationToken token;
 
-        ListingVisitor(Path root, boolean includeHidden, boolean includeStats, List<Map<String, Object>> entries) {
+        ListingVisitor(Path root, boolean includeHidden, boolean includeStats, List<Map<String, Object>> entries,
+                       ExecutionContext.CancellationToken token) {
             this.root = root;
             this.includeHidden = includeHidden;
             this.includeStats = includeStats;
             this.entries = entries;
+            this.token = token;
         }
 
         @Override
         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (token.isCancelled()) {
+                return FileVisitResult.TERMINATE;
+            }
             if (!includeHidden && file.getFileName().toString().startsWith(".")) {
                 return FileVisitResult.CONTINUE;
             }
@@ -246,6 +253,9 @@ public final class CoreFsPrimitives {
 
         @Override
         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (token.isCancelled()) {
+                return FileVisitResult.TERMINATE;
+            }
             if (!Objects.equals(dir, root)) {
                 if (!includeHidden && dir.getFileName().toString().startsWith(".")) {
                     return FileVisitResult.SKIP_SUBTREE;
@@ -1,7 +1,5 @@
 package work.lcod.kernel.core;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import work.lcod.kernel.core.stream.InMemoryStreamHandle;
@@ -37,7 +35,7 @@ public final class CoreStreamPrimitives {
         }
         String decode = input != null && input.get("decode") != null ? String.valueOf(input.get("decode")) : handle.encoding();
         String normalizedEncoding = decode == null ? "utf-8" : decode.toLowerCase();
-        String chunkValue = encodeChunk(chunk.bytes(), normalizedEncoding);
+        String chunkValue = InMemoryStreamHandle.encodeChunk(chunk.bytes(), normalizedEncoding);
         Map<String, Object> result = new LinkedHashMap<>();
         result.put("done", false);
         result.put("chunk", chunkValue);
@@ -58,21 +56,4 @@ public final class CoreStreamPrimitives {
         }
         return Map.of("closed", true);
     }
-
-    private static String encodeChunk(byte[] bytes, String encoding) {
-        if (encoding == null || encoding.equalsIgnoreCase("utf-8") || encoding.equalsIgnoreCase("utf8")) {
-            return new String(bytes, StandardCharsets.UTF_8);
-        }
-        if (encoding.equalsIgnoreCase("base64")) {
-            return Base64.getEncoder().encodeToString(bytes);
-        }
-        if (encoding.equalsIgnoreCase("hex")) {
-            StringBuilder builder = new StringBuilder(bytes.length * 2);
-            for (byte b : bytes) {
-                builder.append(String.format("%02x", b));
-            }
-            return builder.toString();
-        }
-        return new String(bytes, StandardCharsets.UTF_8);
-    }
 }
@@ -1,9 +1,13 @@
 package work.lcod.kernel.core.stream;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 /**
@@ -11,6 +15,7 @@ import java.util.UUID;
  */
 public final class InMemoryStreamHandle {
     public static final String HANDLE_KEY = "__lcod_stream_handle__";
+    private static final byte[] EMPTY_CHUNK = new byte[0];
 
     private final List<byte[]> chunks;
     private final String encoding;
@@ -20,7 +25,7 @@ public final class InMemoryStreamHandle {
     private boolean closed = false;
 
     private InMemoryStreamHandle(List<byte[]> chunks, String encoding) {
-        this.chunks = chunks;
+        this.chunks = new ArrayList<>(chunks);
         this.encoding = encoding;
     }
 
@@ -52,8 +57,7 @@ public final class InMemoryStreamHandle {
             byte[] chunk = chunks.get(chunkIndex);
             int remaining = chunk.length - offset;
             if (remaining <= 0) {
-                chunkIndex++;
-                offset = 0;
+                release();
                 continue;
             }
             int limit = maxBytes > 0 ? Math.min(maxBytes, remaining) : remaining;
@@ -62,8 +66,7 @@ public final class InMemoryStreamHandle {
             offset += limit;
             long currentSeq = sequence++;
             if (offset >= chunk.length) {
-                chunkIndex++;
-                offset = 0;
+                release();
             }
             return new ReadChunk(false, slice, currentSeq);
         }
@@ -71,6 +74,57 @@ public final class InMemoryStreamHandle {
         return ReadChunk.done(sequence);
     }
 
+    /**
+     * Pulls the remaining chunks lazily, decoded with the handle encoding. Consumed chunks are released
+     * so a fully iterated handle no longer pins its payload.
+     */
+    public Iterator<Object> chunkIterator() {
+        return new Iterator<>() {
+            private ReadChunk next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = read(0);
+                }
+                return !next.done();
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var chunk = next;
+                next = null;
+                return encodeChunk(chunk.bytes(), encoding);
+            }
+        };
+    }
+
+    public static String encodeChunk(byte[] bytes, String encoding) {
+        if (encoding == null || encoding.equalsIgnoreCase("utf-8") || encoding.equalsIgnoreCase("utf8")) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        if (encoding.equalsIgnoreCase("base64")) {
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        if (encoding.equalsIgnoreCase("hex")) {
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void release() {
+        chunks.set(chunkIndex, EMPTY_CHUNK);
+        chunkIndex++;
+        offset = 0;
+    }
+
     public synchronized void close() {
         closed = true;
     }
@@ -10,7 +10,9 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Stream;
+import java.util.NoSuchElementException;
+import java.util.stream.BaseStream;
+import work.lcod.kernel.core.stream.InMemoryStreamHandle;
 import work.lcod.kernel.runtime.ExecutionContext;
 import work.lcod.kernel.runtime.Registry;
 
@@ -49,9 +51,18 @@ public final class FlowPrimitives {
 
     private static Object flowForeach(ExecutionContext ctx, Map<String, Object> input, work.lcod.kernel.runtime.StepMeta meta) throws Exception {
         var source = input != null && input.containsKey("list") ? input.get("list") : input == null ? null : input.get("stream");
-        var items = toList(source);
+        try {
+            return foreachItems(ctx, input, meta, iterate(source), source instanceof List<?> list ? list.size() : -1);
+        } finally {
+            if (source instanceof BaseStream<?, ?> stream) {
+                stream.close();
+            }
+        }
+    }
+
+    private static Object foreachItems(ExecutionContext ctx, Map<String, Object> input, work.lcod.kernel.runtime.StepMeta meta, Iterator<?> items, int knownSize) throws Exception {
         var results = new ArrayList<>();
-        if (items.isEmpty()) {
+        if (!items.hasNext()) {
             if (!hasSlot(meta, "else")) {
                 return Map.of("results", results);
             }
@@ -60,9 +71,37 @@ public final class FlowPrimitives {
             collect(meta, results, elseState, elseVars, null, false);
             return Map.of("results", results);
         }
-        for (var index = 0; index < items.size(); index++) {
+        if (isParallel(input)) {
+            var concurrency = readConcurrency(input.get("concurrency"), Runtime.getRuntime().availableProcessors());
+            if (knownSize > 0) {
+                concurrency = Math.min(knownSize, concurrency);
+            }
+            // Workers pull the next item only once they are free, which bounds how much of a lazy source is in memory.
+            var collected = ParallelExecution.run(ctx, items, concurrency, (iterCtx, item, index) -> {
+                var slotVars = slotVars(item, index);
+                try {
+                    var iterState = iterCtx.runSlot("body", null, slotVars);
+                    var values = new ArrayList<>(1);
+                    collect(meta, values, iterState, slotVars, item, true);
+                    return values;
+                } catch (FlowSignalException signal) {
+                    if (signal.signal() == FlowSignal.CONTINUE) {
+                        return List.of();
+                    }
+                    if (signal.signal() == FlowSignal.BREAK) {
+                        return ParallelExecution.BREAK;
+                    }
+                    throw signal;
+                }
+            });
+            for (var values : collected) {
+                results.addAll((List<?>) values);
+            }
+            return Map.of("results", results);
+        }
+        for (var index = 0; items.hasNext(); index++) {
             ctx.ensureNotCancelled();
-            var item = items.get(index);
+            var item = items.next();
             var slotVars = slotVars(item, index);
             try {
                 var iterState = ctx.runSlot("body", null, slotVars);
@@ -139,22 +178,19 @@ public final class FlowPrimitives {
 
     private static Object flowParallel(ExecutionContext ctx, Map<String, Object> input, work.lcod.kernel.runtime.StepMeta meta) throws Exception {
         var tasks = input != null && input.get("tasks") instanceof List<?> list ? list : List.of();
-        if (!hasSlot(meta, "tasks")) {
+        if (!hasSlot(meta, "tasks") || tasks.isEmpty()) {
             return Map.of("results", List.of());
         }
         var collectPath = meta == null ? null : meta.collectPath();
-        var results = new ArrayList<>();
-        for (var index = 0; index < tasks.size(); index++) {
-            ctx.ensureNotCancelled();
-            var slotVars = slotVars(tasks.get(index), index);
+        var concurrency = Math.min(tasks.size(), readConcurrency(input.get("concurrency"), Runtime.getRuntime().availableProcessors()));
+        var results = ParallelExecution.run(ctx, tasks.iterator(), concurrency, (taskCtx, task, index) -> {
+            var slotVars = slotVars(task, index);
             try {
-                var iterState = ctx.runSlot("tasks", null, slotVars);
+                var iterState = taskCtx.runSlot("tasks", null, slotVars);
                 if (collectPath != null && !collectPath.isBlank()) {
-                    var value = getByPath(Map.of("$", iterState == null ? Map.of() : iterState, "$slot", slotVars), collectPath);
-                    results.add(value);
-                } else {
-                    results.add(iterState);
+                    return getByPath(Map.of("$", iterState == null ? Map.of() : iterState, "$slot", slotVars), collectPath);
                 }
+                return iterState;
             } catch (Throwable err) {
                 var normalized = FlowErrorUtils.normalize(err);
                 var code = String.valueOf(normalized.getOrDefault("code", "unexpected_error"));
@@ -162,7 +198,7 @@ public final class FlowPrimitives {
                 var data = normalized.get("data");
                 throw new FlowErrorException(code, message, data);
             }
-        }
+        });
         return Map.of("results", results);
     }
 
@@ -263,37 +299,64 @@ public final class FlowPrimitives {
         return current;
     }
 
-    private static List<Object> toList(Object source) {
+    /**
+     * Exposes the foreach source as a lazy iterator so streams, iterators and stream handles are consumed
+     * one item at a time instead of being drained into a list up front.
+     */
+    private static Iterator<?> iterate(Object source) {
         if (source == null) {
-            return Collections.emptyList();
-        }
-        if (source instanceof List<?> list) {
-            return new ArrayList<>(list);
+            return Collections.emptyIterator();
         }
         if (source instanceof Iterable<?> iterable) {
-            var collected = new ArrayList<>();
-            for (var item : iterable) {
-                collected.add(item);
-            }
-            return collected;
+            return iterable.iterator();
+        }
+        if (source instanceof BaseStream<?, ?> stream) {
+            return stream.iterator();
         }
-        if (source instanceof Stream<?> stream) {
-            return stream.collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        if (source instanceof Iterator<?> iterator) {
+            return iterator;
         }
         if (source.getClass().isArray()) {
             var length = Array.getLength(source);
-            var collected = new ArrayList<>();
-            for (var i = 0; i < length; i++) {
-                collected.add(Array.get(source, i));
-            }
-            return collected;
+            return new Iterator<>() {
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return position < length;
+                }
+
+                @Override
+                public Object next() {
+                    if (position >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    return Array.get(source, position++);
+                }
+            };
         }
-        if (source instanceof Iterator<?> iterator) {
-            var collected = new ArrayList<>();
-            iterator.forEachRemaining(collected::add);
-            return collected;
+        var handle = InMemoryStreamHandle.from(source);
+        if (handle != null) {
+            return handle.chunkIterator();
+        }
+        return Collections.singletonList(source).iterator();
+    }
+
+    private static boolean isParallel(Map<String, Object> input) {
+        if (input == null) {
+            return false;
+        }
+        if (isTruthy(input.get("parallel"))) {
+            return true;
+        }
+        return input.get("concurrency") instanceof Number number && number.intValue() > 1;
+    }
+
+    private static int readConcurrency(Object raw, int fallback) {
+        if (raw instanceof Number number && number.intValue() > 0) {
+            return number.intValue();
         }
-        return Collections.singletonList(source);
+        return Math.max(1, fallback);
     }
 
     private static Map<String, Object> slotVars(Object item, int index) {
@@ -0,0 +1,169 @@
+package work.lcod.kernel.flow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import work.lcod.kernel.runtime.ExecutionContext;
+import work.lcod.kernel.runtime.VirtualThreads;
+
+/**
+ * Runs slot iterations on worker threads, each iteration owning a forked {@link ExecutionContext}. At most
+ * {@code concurrency} items are in flight, results come back in input order and the first failure
+ * cancels the remaining work (through a child cancellation token) before being rethrown.
+ */
+final class ParallelExecution {
+    /**
+     * Returned by an iteration to stop the run: later items are not dispatched, in-flight iterations past
+     * this index are cancelled and only the results before it are kept.
+     */
+    static final Object BREAK = new Object();
+
+    private static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("lcod-flow");
+
+    private ParallelExecution() {}
+
+    @FunctionalInterface
+    interface Iteration {
+        Object run(ExecutionContext ctx, Object item, int index) throws Exception;
+    }
+
+    static List<Object> run(ExecutionContext ctx, Iterator<?> items, int concurrency, Iteration iteration) throws Exception {
+        var token = ctx.cancellationToken().child();
+        var run = new Run(ctx, items, iteration, token);
+        int workers = Math.max(1, concurrency);
+        var done = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            try {
+                EXECUTOR.execute(() -> {
+                    try {
+                        run.work();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                done.countDown();
+                run.fail(ex);
+            }
+        }
+        try {
+            done.await();
+        } catch (InterruptedException ex) {
+            run.fail(ex);
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+        run.rethrowFailure();
+        ctx.ensureNotCancelled();
+        return run.results();
+    }
+
+    private static final class Run {
+        private final ExecutionContext parent;
+        private final Iterator<?> items;
+        private final Iteration iteration;
+        private final ExecutionContext.CancellationToken token;
+        private final List<Object> results = new ArrayList<>();
+        private final Map<Integer, InFlight> inFlight = new HashMap<>();
+        private int limit = Integer.MAX_VALUE;
+        private Throwable failure;
+
+        Run(ExecutionContext parent, Iterator<?> items, Iteration iteration, ExecutionContext.CancellationToken token) {
+            this.parent = parent;
+            this.items = items;
+            this.iteration = iteration;
+            this.token = token;
+        }
+
+        void work() {
+            while (true) {
+                Object item;
+                int index;
+                ExecutionContext iterCtx;
+                synchronized (this) {
+                    if (failure != null || token.isCancelled() || results.size() >= limit || !items.hasNext()) {
+                        return;
+                    }
+                    item = items.next();
+                    index = results.size();
+                    results.add(null);
+                    var iterToken = token.child();
+                    iterCtx = parent.fork(iterToken);
+                    inFlight.put(index, new InFlight(Thread.currentThread(), iterToken));
+                }
+                Object value;
+                Throwable error = null;
+                try {
+                    value = iteration.run(iterCtx, item, index);
+                } catch (Throwable err) {
+                    value = null;
+                    error = err;
+                }
+                synchronized (this) {
+                    inFlight.remove(index);
+                    Thread.interrupted();
+                    if (index >= limit) {
+                        // Cancelled by an earlier break; whatever happened is discarded.
+                        continue;
+                    }
+                    if (error != null) {
+                        fail(error);
+                        return;
+                    }
+                    if (value == BREAK) {
+                        stopAt(index);
+                        continue;
+                    }
+                    results.set(index, value);
+                }
+            }
+        }
+
+        private synchronized void stopAt(int index) {
+            limit = Math.min(limit, index);
+            for (var entry : inFlight.entrySet()) {
+                if (entry.getKey() > index) {
+                    entry.getValue().token().cancel();
+                    entry.getValue().thread().interrupt();
+                }
+            }
+        }
+
+        synchronized void fail(Throwable err) {
+            if (failure != null) {
+                return;
+            }
+            failure = err;
+            token.cancel();
+            // Wake up siblings blocked on I/O; they observe the cancelled token once they resume.
+            for (var running : inFlight.values()) {
+                if (running.thread() != Thread.currentThread()) {
+                    running.thread().interrupt();
+                }
+            }
+        }
+
+        synchronized void rethrowFailure() throws Exception {
+            if (failure instanceof Exception ex) {
+                throw ex;
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+        }
+
+        synchronized List<Object> results() {
+            return new ArrayList<>(results.subList(0, Math.min(limit, results.size())));
+        }
+    }
+
+    private record InFlight(Thread thread, ExecutionContext.CancellationToken token) {}
+}
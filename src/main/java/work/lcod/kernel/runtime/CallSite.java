@@ -0,0 +1,35 @@
+package work.lcod.kernel.runtime;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Call id of a compiled compose step together with the registry entry it last resolved to.
+ * The cached entry is reused until the registry it came from changes.
+ */
+final class CallSite {
+    private final String id;
+    private volatile Resolution cached;
+
+    CallSite(String id) {
+        this.id = id;
+    }
+
+    String id() {
+        return id;
+    }
+
+    Registry.Entry resolve(Registry registry) {
+        long version = registry.version();
+        Resolution snapshot = cached;
+        if (snapshot != null && snapshot.version() == version && snapshot.registry().get() == registry) {
+            return snapshot.entry();
+        }
+        Registry.Entry entry = registry.lookup(id);
+        if (entry != null) {
+            cached = new Resolution(new WeakReference<>(registry), version, entry);
+        }
+        return entry;
+    }
+
+    private record Resolution(WeakReference<Registry> registry, long version, Registry.Entry entry) {}
+}
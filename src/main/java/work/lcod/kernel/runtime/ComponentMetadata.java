@@ -4,17 +4,31 @@ import java.util.Collections;
 import java.util.List;
 
 /**
- * Describes declared inputs/outputs/slots for a component (derived from lcp.toml).
+ * Describes declared inputs/outputs/slots for a component (derived from lcp.toml). Components declared
+ * {@code pure} have their outputs memoised by {@link ResultCache}, keyed by their {@link #fingerprint()} so
+ * edited definitions do not reuse stale results.
  */
 public final class ComponentMetadata {
     private final List<String> inputs;
     private final List<String> outputs;
     private final List<String> slots;
+    private final boolean pure;
+    private final String fingerprint;
 
     public ComponentMetadata(List<String> inputs, List<String> outputs, List<String> slots) {
+        this(inputs, outputs, slots, false);
+    }
+
+    public ComponentMetadata(List<String> inputs, List<String> outputs, List<String> slots, boolean pure) {
+        this(inputs, outputs, slots, pure, null);
+    }
+
+    public ComponentMetadata(List<String> inputs, List<String> outputs, List<String> slots, boolean pure, String fingerprint) {
         this.inputs = inputs == null ? List.of() : List.copyOf(inputs);
         this.outputs = outputs == null ? List.of() : List.copyOf(outputs);
         this.slots = slots == null ? List.of() : List.copyOf(slots);
+        this.pure = pure;
+        this.fingerprint = fingerprint;
     }
 
     public List<String> inputs() {
@@ -29,8 +43,24 @@ public final class ComponentMetadata {
         return slots;
     }
 
+    public boolean isPure() {
+        return pure;
+    }
+
+    /**
+     * Identifies the component's definition (e.g. a hash of its compose and manifest), or {@code null} when it is
+     * not known.
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public ComponentMetadata withFingerprint(String fingerprint) {
+        return new ComponentMetadata(inputs, outputs, slots, pure, fingerprint);
+    }
+
     public boolean isEmpty() {
-        return inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty();
+        return inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty() && !pure;
     }
 
     public static ComponentMetadata empty() {
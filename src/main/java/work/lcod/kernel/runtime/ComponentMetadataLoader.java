@@ -1,9 +1,13 @@
 package work.lcod.kernel.runtime;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -39,10 +43,33 @@ public final class ComponentMetadataLoader {
         List<String> inputs = readKeys(result.getTable("inputs"));
         List<String> outputs = readKeys(result.getTable("outputs"));
         List<String> slots = readKeys(result.getTable("slots"));
-        if (inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty()) {
+        boolean pure = Boolean.TRUE.equals(result.getBoolean("pure"));
+        if (inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty() && !pure) {
             return Optional.empty();
         }
-        return Optional.of(new ComponentMetadata(inputs, outputs, slots));
+        return Optional.of(new ComponentMetadata(inputs, outputs, slots, pure));
+    }
+
+    /**
+     * Stamps pure metadata with a SHA-256 of the files defining the component (compose, manifest) so memoised
+     * results follow edits. Other metadata is returned unchanged.
+     */
+    public static ComponentMetadata fingerprinted(ComponentMetadata metadata, Path... definitionFiles) {
+        if (metadata == null || !metadata.isPure()) {
+            return metadata;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path file : definitionFiles) {
+                byte[] content = file != null && Files.isRegularFile(file) ? Files.readAllBytes(file) : new byte[0];
+                digest.update(Long.toString(content.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(content);
+            }
+            return metadata.withFingerprint("sha256-" + HexFormat.of().formatHex(digest.digest()));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return metadata;
+        }
     }
 
     private static List<String> readKeys(TomlTable table) {
@@ -0,0 +1,317 @@
+package work.lcod.kernel.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed and canonicalised compose step trees, so cold starts skip YAML parsing and id
+ * canonicalisation. Entries are keyed by a SHA-256 of the compose source and of the manifests its ids are
+ * canonicalised against, and stored in a small tagged binary format. Runs keep them under their cache directory;
+ * other callers use {@link #defaultDirectory()}, {@code ~/.lcod/cache/compose} unless {@code lcod.composeCache.dir}
+ * says otherwise. {@code lcod.composeCache.disabled=true} bypasses the cache. Each directory is capped at
+ * {@code lcod.composeCache.maxBytes} (default 64 MiB): hits refresh an entry's modification time and the least
+ * recently used entries are evicted past the cap. Unreadable entries are treated as misses.
+ */
+final class ComposeDiskCache {
+    private static final int MAGIC = 0x4c434f43; // "LCOC"
+    private static final int FORMAT = 1;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BIG_INTEGER = 6;
+    private static final byte BIG_DECIMAL = 7;
+    private static final byte STRING = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    private static final boolean DISABLED = Boolean.getBoolean("lcod.composeCache.disabled");
+    private static final Path OVERRIDE = configuredDirectory();
+    private static final long MAX_BYTES = Math.max(0, Long.getLong("lcod.composeCache.maxBytes", 64L << 20));
+    // Bytes written per directory since it was last pruned; starts past the threshold so the first write prunes.
+    private static final Map<Path, AtomicLong> WRITTEN = new ConcurrentHashMap<>();
+
+    private ComposeDiskCache() {}
+
+    /**
+     * Returns the directory entries go to when the caller has no cache directory of its own, or {@code null} when
+     * the cache is disabled.
+     */
+    static Path defaultDirectory() {
+        if (DISABLED) {
+            return null;
+        }
+        if (OVERRIDE != null) {
+            return OVERRIDE;
+        }
+        String home = System.getProperty("user.home");
+        if (home == null || home.isBlank()) {
+            return null;
+        }
+        return Path.of(home, ".lcod", "cache", "compose").toAbsolutePath().normalize();
+    }
+
+    /**
+     * Returns {@code preferred} (e.g. {@code <cacheDirectory>/compose}), the default directory when it is
+     * {@code null}, or {@code null} when the cache is disabled.
+     */
+    static Path directory(Path preferred) {
+        if (DISABLED) {
+            return null;
+        }
+        return preferred == null ? defaultDirectory() : preferred.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Hashes the compose source together with the (optional) component and workspace manifests.
+     */
+    static String key(byte[] source, byte[] manifest, byte[] workspaceManifest) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(("compose-v" + FORMAT).getBytes(StandardCharsets.UTF_8));
+            update(digest, source);
+            update(digest, manifest);
+            update(digest, workspaceManifest);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
+        }
+    }
+
+    private static void update(MessageDigest digest, byte[] bytes) {
+        if (bytes == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        digest.update((byte) 1);
+        digest.update(Long.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Map<String, Object>> read(Path directory, String key) {
+        Path file = fileFor(directory, key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                return null;
+            }
+            Object steps = readValue(in);
+            if (!(steps instanceof List<?> list)) {
+                return null;
+            }
+            touch(file);
+            return (List<Map<String, Object>>) list;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    static void write(Path directory, String key, List<Map<String, Object>> steps) {
+        Path file = fileFor(directory, key);
+        try {
+            AtomicFiles.write(file, stream -> {
+                var out = new DataOutputStream(stream);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                writeValue(out, steps);
+                out.flush();
+            });
+            AtomicLong written = WRITTEN.computeIfAbsent(directory, ignored -> new AtomicLong(Long.MAX_VALUE / 2));
+            if (written.addAndGet(Files.size(file)) > MAX_BYTES / 8) {
+                written.set(0);
+                prune(directory, MAX_BYTES);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            // the cache is best-effort; the next load parses the compose again
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long number) {
+            out.writeByte(LONG);
+            out.writeLong(number);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof BigInteger number) {
+            out.writeByte(BIG_INTEGER);
+            writeString(out, number.toString());
+        } else if (value instanceof BigDecimal number) {
+            out.writeByte(BIG_DECIMAL);
+            writeString(out, number.toString());
+        } else if (value instanceof String text) {
+            out.writeByte(STRING);
+            writeString(out, text);
+        } else if (value instanceof List<?> list) {
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (var entry : map.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported compose value: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BIG_INTEGER:
+                return new BigInteger(readString(in));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(in));
+            case STRING:
+                return readString(in);
+            case LIST: {
+                int size = readLength(in);
+                var list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readLength(in);
+                var map = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < size; i++) {
+                    String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown compose cache tag " + tag);
+        }
+    }
+
+    // DataOutput.writeUTF caps strings at 64 KiB, inline scripts can be longer.
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Every element takes at least one byte, so a length beyond what is left means a corrupt entry.
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Corrupt compose cache entry");
+        }
+        return length;
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // read-only cache: entries are then evicted by write time
+        }
+    }
+
+    /**
+     * When {@code directory} holds more than {@code maxBytes}, deletes the least recently used entries until it is
+     * back under three quarters of that.
+     */
+    static void prune(Path directory, long maxBytes) {
+        record Entry(Path path, FileTime used, long size) {}
+        List<Entry> entries = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.find(directory, 2,
+            (path, attrs) -> attrs.isRegularFile() && path.getFileName().toString().endsWith(".bin"))) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                entries.add(new Entry(path, attrs.lastModifiedTime(), attrs.size()));
+                total += attrs.size();
+            }
+        } catch (IOException | RuntimeException ex) {
+            return;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparing(Entry::used));
+        long target = maxBytes / 4 * 3;
+        for (Entry entry : entries) {
+            if (total <= target) {
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path());
+                total -= entry.size();
+            } catch (IOException ignored) {
+                // another process may be using the entry; it will be pruned next time
+            }
+        }
+    }
+
+    private static Path fileFor(Path directory, String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".bin");
+    }
+
+    private static Path configuredDirectory() {
+        String configured = System.getProperty("lcod.composeCache.dir");
+        if (configured == null || configured.isBlank()) {
+            return null;
+        }
+        return Path.of(configured).toAbsolutePath().normalize();
+    }
+}
@@ -3,21 +3,22 @@ package work.lcod.kernel.runtime;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import org.tomlj.Toml;
+import java.util.concurrent.ConcurrentHashMap;
 import org.tomlj.TomlParseResult;
 import org.tomlj.TomlTable;
 
@@ -26,16 +27,75 @@ import org.tomlj.TomlTable;
  */
 public final class ComposeLoader {
     private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final Map<Path, CachedPlan> PLAN_CACHE = new ConcurrentHashMap<>();
 
     private ComposeLoader() {}
 
+    /**
+     * Loads and compiles a local compose, reusing the compiled plan while the file and the manifests its ids are
+     * canonicalised against are unchanged.
+     */
+    public static ComposePlan loadPlanFromLocalFile(Path path) {
+        return loadPlanFromLocalFile(path, null);
+    }
+
+    /**
+     * Same as {@link #loadPlanFromLocalFile(Path)}, keeping parsed composes under {@code cacheDirectory} (a run's
+     * cache directory) instead of the shared default location.
+     */
+    public static ComposePlan loadPlanFromLocalFile(Path path, Path cacheDirectory) {
+        Path key = path.toAbsolutePath().normalize();
+        PlanStamp stamp = PlanStamp.of(key);
+        CachedPlan cached = PLAN_CACHE.get(key);
+        if (cached != null && stamp != null && stamp.equals(cached.stamp())) {
+            return cached.plan();
+        }
+        ComposePlan plan = ComposePlan.compile(loadFromLocalFile(key, cacheDirectory));
+        if (stamp != null) {
+            PLAN_CACHE.put(key, new CachedPlan(stamp, plan));
+        }
+        return plan;
+    }
+
+    /**
+     * Parses a local compose and canonicalises its ids against the surrounding manifests. Results are kept in
+     * the {@link ComposeDiskCache}, keyed by the content of the compose and those manifests.
+     */
     public static List<Map<String, Object>> loadFromLocalFile(Path path) {
-        try (var in = Files.newInputStream(path)) {
-            var steps = parseCompose(in);
-            var context = resolveContext(path);
+        return loadFromLocalFile(path, null);
+    }
+
+    /**
+     * Same as {@link #loadFromLocalFile(Path)}, keeping parsed composes under {@code <cacheDirectory>/compose}
+     * when {@code cacheDirectory} is not {@code null}.
+     */
+    public static List<Map<String, Object>> loadFromLocalFile(Path path, Path cacheDirectory) {
+        try {
+            byte[] source = Files.readAllBytes(path);
+            Path manifestPath = path.resolveSibling("lcp.toml");
+            Path workspaceManifestPath = ManifestCache.findWorkspaceManifest(path.toAbsolutePath().getParent());
+            // Read the manifests themselves: the key must follow their content, not just their mtime and size.
+            byte[] manifest = readIfPresent(manifestPath);
+            byte[] workspaceManifest = readIfPresent(workspaceManifestPath);
+            Path diskCache = ComposeDiskCache.directory(cacheDirectory == null ? null : cacheDirectory.resolve("compose"));
+            String cacheKey = diskCache != null ? ComposeDiskCache.key(source, manifest, workspaceManifest) : null;
+            if (cacheKey != null) {
+                var cached = ComposeDiskCache.read(diskCache, cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            var steps = parseCompose(new ByteArrayInputStream(source));
+            var context = resolveContext(
+                ManifestCache.parse(manifestPath, manifest),
+                ManifestCache.parse(workspaceManifestPath, workspaceManifest)
+            );
             if (context != null) {
                 canonicalizeSteps(steps, context);
             }
+            if (cacheKey != null) {
+                ComposeDiskCache.write(diskCache, cacheKey, steps);
+            }
             return steps;
         } catch (IOException ex) {
             throw new IllegalStateException("Failed to read compose: " + path, ex);
@@ -43,21 +103,35 @@ public final class ComposeLoader {
     }
 
     public static List<Map<String, Object>> loadFromHttp(URI uri) {
+        return loadFromHttp(uri, null, Duration.ZERO, false);
+    }
+
+    /**
+     * Downloads a remote compose. When {@code cacheDirectory} (a run's cache directory) is not {@code null} the
+     * body is kept under {@code http/} and reused for {@code ttl} before being revalidated, and the parsed steps
+     * under {@code compose/}. In {@code offline} mode only cached copies are used.
+     */
+    public static List<Map<String, Object>> loadFromHttp(URI uri, Path cacheDirectory, Duration ttl, boolean offline) {
         try {
-            var client = HttpClient.newHttpClient();
-            var request = HttpRequest.newBuilder(uri).GET().build();
-            var response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
-            if (response.statusCode() >= 400) {
-                throw new IllegalStateException("HTTP " + response.statusCode() + " while downloading compose: " + uri);
+            byte[] body = HttpComposeCache.fetch(uri, cacheDirectory == null ? null : cacheDirectory.resolve("http"), ttl, offline);
+            Path diskCache = ComposeDiskCache.directory(cacheDirectory == null ? null : cacheDirectory.resolve("compose"));
+            String cacheKey = diskCache != null ? ComposeDiskCache.key(body, null, null) : null;
+            if (cacheKey != null) {
+                var cached = ComposeDiskCache.read(diskCache, cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
             }
-            try (var body = response.body()) {
-                return parseCompose(body);
+            var steps = parseCompose(new ByteArrayInputStream(body));
+            if (cacheKey != null) {
+                ComposeDiskCache.write(diskCache, cacheKey, steps);
             }
+            return steps;
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
             throw new IllegalStateException("Interrupted while downloading compose: " + uri, ex);
         } catch (IOException ex) {
-            throw new IllegalStateException("Failed to download compose: " + uri, ex);
+            throw new IllegalStateException("Failed to download compose: " + uri + " (" + ex.getMessage() + ")", ex);
         }
     }
 
@@ -191,13 +265,22 @@ public final class ComposeLoader {
         return "lcod://" + base + "@" + version;
     }
 
-    private static ComposeContext resolveContext(Path composePath) {
+    private static byte[] readIfPresent(Path path) throws IOException {
+        if (path == null || !Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return Files.readAllBytes(path);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private static ComposeContext resolveContext(TomlParseResult manifest, TomlParseResult workspaceManifest) {
         Map<String, String> aliases = new LinkedHashMap<>();
         String basePath = "";
         String version = "";
 
-        Path manifestPath = composePath.resolveSibling("lcp.toml");
-        TomlParseResult manifest = parseToml(manifestPath);
         if (manifest != null) {
             basePath = deriveBasePath(manifest);
             version = Optional.ofNullable(manifest.getString("version")).orElse("");
@@ -210,7 +293,6 @@ public final class ComposeLoader {
             }
         }
 
-        TomlParseResult workspaceManifest = parseToml(findWorkspaceManifest(composePath));
         if (workspaceManifest != null) {
             TomlTable workspace = workspaceManifest.getTable("workspace");
             if (workspace != null) {
@@ -232,33 +314,6 @@ public final class ComposeLoader {
         return new ComposeContext(basePath, version, aliases);
     }
 
-    private static TomlParseResult parseToml(Path path) {
-        if (path == null || !Files.isRegularFile(path)) {
-            return null;
-        }
-        try {
-            TomlParseResult result = Toml.parse(Files.readString(path));
-            if (result.hasErrors()) {
-                return null;
-            }
-            return result;
-        } catch (IOException ex) {
-            return null;
-        }
-    }
-
-    private static Path findWorkspaceManifest(Path composePath) {
-        Path current = composePath.toAbsolutePath().getParent();
-        while (current != null) {
-            Path candidate = current.resolve("workspace.lcp.toml");
-            if (Files.isRegularFile(candidate)) {
-                return candidate;
-            }
-            current = current.getParent();
-        }
-        return null;
-    }
-
     private static Map<String, String> readAliasEntries(TomlTable table) {
         Map<String, String> aliases = new LinkedHashMap<>();
         if (table == null || table.isEmpty()) {
@@ -295,4 +350,37 @@ public final class ComposeLoader {
     }
 
     private record ComposeContext(String basePath, String version, Map<String, String> aliases) {}
+
+    private record CachedPlan(PlanStamp stamp, ComposePlan plan) {}
+
+    /**
+     * Stamps of the compose and of the manifests that shape its canonical ids; a missing manifest stamps as
+     * {@code null}, so creating or removing one also invalidates the plan.
+     */
+    private record PlanStamp(FileStamp compose, FileStamp manifest, Path workspaceManifest, FileStamp workspace) {
+        static PlanStamp of(Path compose) {
+            FileStamp composeStamp = FileStamp.of(compose);
+            if (composeStamp == null) {
+                return null;
+            }
+            Path workspaceManifest = ManifestCache.findWorkspaceManifest(compose.getParent());
+            return new PlanStamp(
+                composeStamp,
+                FileStamp.of(compose.resolveSibling("lcp.toml")),
+                workspaceManifest,
+                workspaceManifest == null ? null : FileStamp.of(workspaceManifest)
+            );
+        }
+    }
+
+    private record FileStamp(long modifiedMillis, long size) {
+        static FileStamp of(Path path) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileStamp(attrs.lastModifiedTime().toMillis(), attrs.size());
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,558 @@
+package work.lcod.kernel.runtime;
+
+import static work.lcod.kernel.runtime.Registry.RAW_INPUT_KEY;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable, pre-compiled form of a compose step list. Call ids, slot bodies, input bindings and
+ * output projections are parsed once so {@link ComposeRunner} can execute the same compose many
+ * times without re-interpreting the raw step maps.
+ */
+public final class ComposePlan {
+    static final String SPREAD_KEY = "__lcod_spreads__";
+    static final String OPTIONAL_FLAG = "__lcod_optional__";
+
+    private static final ComposePlan EMPTY = new ComposePlan(List.of(), List.of());
+
+    private final List<Map<String, Object>> source;
+    private final List<Step> steps;
+
+    private ComposePlan(List<Map<String, Object>> source, List<Step> steps) {
+        this.source = source;
+        this.steps = steps;
+    }
+
+    public static ComposePlan compile(List<Map<String, Object>> rawSteps) {
+        if (rawSteps == null || rawSteps.isEmpty()) {
+            return EMPTY;
+        }
+        List<Step> compiled = new ArrayList<>(rawSteps.size());
+        for (var step : rawSteps) {
+            if (step != null) {
+                compiled.add(Step.compile(step));
+            }
+        }
+        return new ComposePlan(Collections.unmodifiableList(rawSteps), List.copyOf(compiled));
+    }
+
+    public static ComposePlan empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Raw step maps this plan was compiled from.
+     */
+    public List<Map<String, Object>> source() {
+        return source;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    public int size() {
+        return steps.size();
+    }
+
+    List<Step> steps() {
+        return steps;
+    }
+
+    static final class Step {
+        private final CallSite callSite;
+        private final boolean scriptCall;
+        private final String collectPath;
+        private final Map<String, List<Map<String, Object>>> slots;
+        private final Map<String, List<Map<String, Object>>> childrenMeta;
+        private final Map<String, ComposePlan> slotPlans;
+        private final Map<List<Map<String, Object>>, ComposePlan> plansBySteps;
+        private final InputTemplate input;
+        private final OutputProjection output;
+
+        private Step(
+            CallSite callSite,
+            String collectPath,
+            Map<String, List<Map<String, Object>>> slots,
+            InputTemplate input,
+            OutputProjection output
+        ) {
+            this.callSite = callSite;
+            this.scriptCall = "lcod://tooling/script@1".equals(callSite.id());
+            this.collectPath = collectPath;
+            this.slots = slots;
+            this.input = input;
+            this.output = output;
+
+            Map<String, List<Map<String, Object>>> meta = slots == null ? new LinkedHashMap<>() : new LinkedHashMap<>(slots);
+            if (meta.containsKey("body") && !meta.containsKey("children")) {
+                meta.put("children", meta.get("body"));
+            }
+            this.childrenMeta = Collections.unmodifiableMap(meta);
+
+            Map<String, ComposePlan> compiledSlots = new LinkedHashMap<>();
+            Map<List<Map<String, Object>>, ComposePlan> byIdentity = new IdentityHashMap<>();
+            if (slots != null) {
+                for (var entry : slots.entrySet()) {
+                    ComposePlan plan = byIdentity.computeIfAbsent(entry.getValue(), ComposePlan::compile);
+                    compiledSlots.put(entry.getKey(), plan);
+                }
+            }
+            this.slotPlans = Collections.unmodifiableMap(compiledSlots);
+            this.plansBySteps = byIdentity;
+        }
+
+        static Step compile(Map<String, Object> step) {
+            return new Step(
+                new CallSite(Objects.toString(step.get("call"), null)),
+                Objects.toString(step.get("collectPath"), null),
+                normalizeSlotMap(step),
+                InputTemplate.compile(castMap(step.get("in"))),
+                OutputProjection.compile(castMap(step.get("out")))
+            );
+        }
+
+        CallSite callSite() {
+            return callSite;
+        }
+
+        boolean isScriptCall() {
+            return scriptCall;
+        }
+
+        String collectPath() {
+            return collectPath;
+        }
+
+        Map<String, List<Map<String, Object>>> childrenMeta() {
+            return childrenMeta;
+        }
+
+        InputTemplate input() {
+            return input;
+        }
+
+        OutputProjection output() {
+            return output;
+        }
+
+        boolean hasSlot(String name) {
+            if (slots == null || name == null) return false;
+            if (slots.containsKey(name)) {
+                return true;
+            }
+            if ("children".equals(name) && slots.containsKey("body")) {
+                return true;
+            }
+            return "body".equals(name) && slots.containsKey("children");
+        }
+
+        ComposePlan slotPlan(String name) {
+            if (slots == null) return EMPTY;
+            if (slotPlans.containsKey(name)) {
+                return slotPlans.get(name);
+            }
+            if ("children".equals(name) && slotPlans.containsKey("body")) {
+                return slotPlans.get("body");
+            }
+            if ("body".equals(name) && slotPlans.containsKey("children")) {
+                return slotPlans.get("children");
+            }
+            return EMPTY;
+        }
+
+        /**
+         * Returns the compiled plan for a step list handed back through {@code runChildren}; slot bodies of
+         * this step are served from the pre-compiled plans, anything else is compiled on the fly.
+         */
+        ComposePlan planFor(List<Map<String, Object>> rawSteps) {
+            if (rawSteps == null) {
+                return EMPTY;
+            }
+            ComposePlan known = plansBySteps.get(rawSteps);
+            return known != null ? known : ComposePlan.compile(rawSteps);
+        }
+    }
+
+    /**
+     * Pre-parsed {@code in} block: spread descriptors followed by the keyed bindings.
+     */
+    static final class InputTemplate {
+        private static final InputTemplate EMPTY_INPUT = new InputTemplate(List.of(), List.of());
+
+        private final List<Spread> spreads;
+        private final List<InputEntry> entries;
+
+        private InputTemplate(List<Spread> spreads, List<InputEntry> entries) {
+            this.spreads = spreads;
+            this.entries = entries;
+        }
+
+        static InputTemplate compile(Map<String, Object> bindings) {
+            if (bindings.isEmpty()) {
+                return EMPTY_INPUT;
+            }
+            List<Spread> spreads = new ArrayList<>();
+            if (bindings.get(SPREAD_KEY) instanceof List<?> descriptors) {
+                for (var descriptorObj : descriptors) {
+                    if (descriptorObj instanceof Map<?, ?> descriptor) {
+                        spreads.add(new Spread(
+                            Binding.compile(descriptor.get("source")),
+                            readPick(descriptor.get("pick")),
+                            Boolean.TRUE.equals(descriptor.get("optional"))
+                        ));
+                    }
+                }
+            }
+            List<InputEntry> entries = new ArrayList<>();
+            for (var entry : bindings.entrySet()) {
+                if (SPREAD_KEY.equals(entry.getKey())) continue;
+                var value = entry.getValue();
+                if ("bindings".equals(entry.getKey())) {
+                    entries.add(new InputEntry(entry.getKey(), Binding.copyOf(value), false));
+                    continue;
+                }
+                var optional = false;
+                if (value instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get(OPTIONAL_FLAG))) {
+                    optional = true;
+                    value = map.get("value");
+                }
+                entries.add(new InputEntry(entry.getKey(), Binding.compile(value), optional));
+            }
+            return new InputTemplate(List.copyOf(spreads), List.copyOf(entries));
+        }
+
+        Map<String, Object> build(Map<String, Object> state, Map<String, Object> slot) {
+            var result = new LinkedHashMap<String, Object>();
+            for (var spread : spreads) {
+                var payload = asObject(spread.source().resolve(state, slot));
+                if (payload == null) {
+                    continue;
+                }
+                if (spread.pick() != null) {
+                    for (var key : spread.pick()) {
+                        if (payload.containsKey(key)) {
+                            result.put(key, StateValues.share(payload.get(key)));
+                        } else if (!spread.optional()) {
+                            result.put(key, null);
+                        }
+                    }
+                } else {
+                    for (var entry : payload.entrySet()) {
+                        result.put(entry.getKey(), StateValues.share(entry.getValue()));
+                    }
+                }
+            }
+            for (var entry : entries) {
+                var resolved = entry.binding().resolve(state, slot);
+                if (entry.optional() && resolved == null) {
+                    continue;
+                }
+                result.put(entry.key(), resolved);
+            }
+            return result;
+        }
+
+        private record Spread(Binding source, List<String> pick, boolean optional) {}
+
+        private record InputEntry(String key, Binding binding, boolean optional) {}
+    }
+
+    /**
+     * Pre-parsed {@code out} block describing how a step result is projected back into the state.
+     */
+    static final class OutputProjection {
+        private static final OutputProjection EMPTY_OUTPUT = new OutputProjection(List.of(), List.of());
+
+        private final List<Spread> spreads;
+        private final List<Alias> aliases;
+
+        private OutputProjection(List<Spread> spreads, List<Alias> aliases) {
+            this.spreads = spreads;
+            this.aliases = aliases;
+        }
+
+        static OutputProjection compile(Map<String, Object> outs) {
+            if (outs.isEmpty()) {
+                return EMPTY_OUTPUT;
+            }
+            List<Spread> spreads = new ArrayList<>();
+            if (outs.get(SPREAD_KEY) instanceof List<?> descriptors) {
+                for (var descriptorObj : descriptors) {
+                    if (!(descriptorObj instanceof Map<?, ?> descriptor)) continue;
+                    PathAccessor path = null;
+                    if (descriptor.get("source") instanceof String str && str.startsWith("$.")) {
+                        path = PathAccessor.parse(str);
+                    }
+                    spreads.add(new Spread(path, readPick(descriptor.get("pick")), Boolean.TRUE.equals(descriptor.get("optional"))));
+                }
+            }
+            List<Alias> aliases = new ArrayList<>();
+            for (var entry : outs.entrySet()) {
+                if (SPREAD_KEY.equals(entry.getKey())) continue;
+                var aliasValue = entry.getValue();
+                var optional = false;
+                if (aliasValue instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get(OPTIONAL_FLAG))) {
+                    optional = true;
+                    aliasValue = map.get("value");
+                }
+                boolean whole = "$".equals(aliasValue);
+                String field = !whole && aliasValue instanceof String str ? str : null;
+                aliases.add(new Alias(entry.getKey(), whole, field, optional));
+            }
+            return new OutputProjection(List.copyOf(spreads), List.copyOf(aliases));
+        }
+
+        void apply(Map<String, Object> state, Object result) {
+            if (!spreads.isEmpty() && result instanceof Map<?, ?>) {
+                for (var spread : spreads) {
+                    Object payload = spread.path() == null ? result : spread.path().read(result);
+                    var payloadMap = asObject(payload);
+                    if (payloadMap == null) {
+                        continue;
+                    }
+                    if (spread.pick() != null) {
+                        for (var key : spread.pick()) {
+                            if (payloadMap.containsKey(key)) {
+                                state.put(key, StateValues.share(payloadMap.get(key)));
+                            } else if (!spread.optional()) {
+                                state.put(key, null);
+                            }
+                        }
+                    } else {
+                        for (var entry : payloadMap.entrySet()) {
+                            state.put(entry.getKey(), StateValues.share(entry.getValue()));
+                        }
+                    }
+                }
+            }
+            for (var alias : aliases) {
+                Object resolved;
+                if (alias.whole()) {
+                    resolved = result;
+                } else if (alias.field() != null && result instanceof Map<?, ?> resMap) {
+                    resolved = resMap.get(alias.field());
+                } else {
+                    resolved = null;
+                }
+                if (alias.optional() && resolved == null) {
+                    continue;
+                }
+                state.put(alias.key(), resolved);
+            }
+        }
+
+        private record Spread(PathAccessor path, List<String> pick, boolean optional) {}
+
+        private record Alias(String key, boolean whole, String field, boolean optional) {}
+    }
+
+    /**
+     * A compiled input expression evaluated against the current state and slot variables.
+     */
+    @FunctionalInterface
+    interface Binding {
+        Object resolve(Map<String, Object> state, Map<String, Object> slot);
+
+        static Binding compile(Object value) {
+            if (value instanceof List<?> list) {
+                List<Binding> items = new ArrayList<>(list.size());
+                for (var item : list) {
+                    items.add(isStepDefinition(item) ? constant(item) : compile(item));
+                }
+                return (state, slot) -> {
+                    var copy = new ArrayList<>(items.size());
+                    for (var item : items) {
+                        copy.add(item.resolve(state, slot));
+                    }
+                    return copy;
+                };
+            }
+            if (value instanceof Map<?, ?> map) {
+                if (Boolean.TRUE.equals(map.get(OPTIONAL_FLAG))) {
+                    return compile(map.get("value"));
+                }
+                if (map.size() == 1 && (map.containsKey("__lcod_state__") || map.containsKey(RAW_INPUT_KEY))) {
+                    return (state, slot) -> StateValues.snapshot(state);
+                }
+                if (isStepDefinition(map)) {
+                    return constant(map);
+                }
+                Map<String, Binding> fields = new LinkedHashMap<>();
+                for (var entry : map.entrySet()) {
+                    var key = String.valueOf(entry.getKey());
+                    fields.put(key, "bindings".equals(key) ? copyOf(entry.getValue()) : compile(entry.getValue()));
+                }
+                return (state, slot) -> {
+                    var copy = new LinkedHashMap<String, Object>();
+                    for (var entry : fields.entrySet()) {
+                        copy.put(entry.getKey(), entry.getValue().resolve(state, slot));
+                    }
+                    return copy;
+                };
+            }
+            if (!(value instanceof String str)) {
+                return constant(value);
+            }
+            if ("__lcod_state__".equals(str)) {
+                return (state, slot) -> StateValues.snapshot(state);
+            }
+            if ("__lcod_result__".equals(str)) {
+                return constant(null);
+            }
+            if (str.startsWith("$.")) {
+                var path = PathAccessor.parse(str);
+                return (state, slot) -> path.read(state);
+            }
+            if (str.startsWith("$slot.")) {
+                var path = PathAccessor.parse(str);
+                return (state, slot) -> path.read(slot == null ? Map.of() : slot);
+            }
+            return constant(value);
+        }
+
+        static Binding copyOf(Object value) {
+            return (state, slot) -> StateValues.share(value);
+        }
+
+        static Binding constant(Object value) {
+            return (state, slot) -> value;
+        }
+    }
+
+    /**
+     * Pre-split {@code $.a.b.0} style path; segments are resolved against maps by key and lists by index.
+     */
+    static final class PathAccessor {
+        private final String[] keys;
+        private final int[] indices;
+
+        private PathAccessor(String[] keys, int[] indices) {
+            this.keys = keys;
+            this.indices = indices;
+        }
+
+        static PathAccessor parse(String path) {
+            var parts = path.split("\\.");
+            int length = Math.max(0, parts.length - 1);
+            var keys = new String[length];
+            var indices = new int[length];
+            for (int i = 0; i < length; i++) {
+                keys[i] = parts[i + 1];
+                indices[i] = parseIndex(parts[i + 1]);
+            }
+            return new PathAccessor(keys, indices);
+        }
+
+        Object read(Object root) {
+            Object current = root;
+            if (current == null) {
+                return null;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (current instanceof Map<?, ?> map) {
+                    current = map.get(keys[i]);
+                } else if (current instanceof List<?> list) {
+                    int index = indices[i];
+                    if (index < 0 || index >= list.size()) {
+                        return null;
+                    }
+                    current = list.get(index);
+                } else {
+                    return null;
+                }
+                if (current == null) {
+                    return null;
+                }
+            }
+            return StateValues.share(current);
+        }
+
+        private static int parseIndex(String token) {
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+    }
+
+    private static Map<String, List<Map<String, Object>>> normalizeSlotMap(Map<String, Object> step) {
+        Map<String, List<Map<String, Object>>> slots = new LinkedHashMap<>();
+        mergeSlotContainer(slots, step.get("children"), "children");
+        mergeSlotContainer(slots, step.get("slots"), null);
+        return slots.isEmpty() ? null : Collections.unmodifiableMap(slots);
+    }
+
+    private static void mergeSlotContainer(Map<String, List<Map<String, Object>>> target, Object source, String defaultName) {
+        if (source == null) return;
+        if (source instanceof List<?> list) {
+            target.put(defaultName == null ? "children" : defaultName, castStepList(list));
+            return;
+        }
+        if (source instanceof Map<?, ?> map) {
+            if (defaultName != null) {
+                Object maybeList = map.get(defaultName);
+                if (maybeList instanceof List<?> list) {
+                    target.put(defaultName, castStepList(list));
+                }
+            }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getValue() instanceof List<?> list) {
+                    target.put(String.valueOf(entry.getKey()), castStepList(list));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> castStepList(List<?> list) {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (Object item : list) {
+            if (item instanceof Map<?, ?> map) {
+                steps.add((Map<String, Object>) map);
+            }
+        }
+        return Collections.unmodifiableList(steps);
+    }
+
+    private static List<String> readPick(Object pick) {
+        if (!(pick instanceof List<?> pickList)) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>(pickList.size());
+        for (var keyObj : pickList) {
+            keys.add(String.valueOf(keyObj));
+        }
+        return List.copyOf(keys);
+    }
+
+    private static boolean isStepDefinition(Object value) {
+        if (!(value instanceof Map<?, ?> map)) return false;
+        Object call = map.get("call");
+        return call instanceof String && !((String) call).isBlank();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object obj) {
+        if (obj instanceof Map<?, ?> map) {
+            return (Map<String, Object>) map;
+        }
+        return Map.of();
+    }
+
+    private static Map<String, Object> asObject(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> casted = (Map<String, Object>) map;
+            return casted;
+        }
+        return null;
+    }
+}
@@ -8,27 +8,34 @@ import java.util.Deque;
 import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Execution context passed to kernel functions. Handles registry access, slot orchestration, and scope cleanups.
  */
 public final class ExecutionContext {
-    private final Registry registry;
+    private Registry registry;
     private final Path workingDirectory;
     private final CancellationToken cancellationToken;
     private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private Map<String, Object> sharedAttributes = new ConcurrentHashMap<>();
     private final Deque<List<Runnable>> scopeStack = new ArrayDeque<>();
-    private ChildRunner childRunner = (steps, localState, slotVars) -> {
+    private static final ChildRunner DEFAULT_CHILD_RUNNER = (ctx, steps, localState, slotVars) -> {
         throw new IllegalStateException("runChildren is unavailable in this context");
     };
-    private final SlotRunner defaultSlotRunner = (name, localState, slotVars) -> {
+    private static final SlotRunner DEFAULT_SLOT_RUNNER = (ctx, name, localState, slotVars) -> {
         throw new IllegalStateException("runSlot is unavailable in this context");
     };
-    private SlotRunner slotRunner = defaultSlotRunner;
+    private ChildRunner childRunner = DEFAULT_CHILD_RUNNER;
+    private SlotRunner slotRunner = DEFAULT_SLOT_RUNNER;
     private final Deque<Map<String, Object>> rawInputStack = new ArrayDeque<>();
+    private ResultCache resultCache = ResultCache.memoryOnly();
 
     public ExecutionContext(Registry registry) {
         this(registry, null, new CancellationToken());
@@ -46,14 +53,69 @@ public final class ExecutionContext {
         this.cancellationToken = token == null ? new CancellationToken() : token;
     }
 
+    /**
+     * Creates a child context for running work on another thread. The child shares the registry, working
+     * directory and cancellation token, starts from a copy of the current attributes, raw-input frames and
+     * slot/child runners, and owns its scope stack so it can run concurrently with this context and its
+     * siblings. Mutable attribute values stay shared by reference, and {@link #sharedAttribute} entries are
+     * common to the whole fork tree.
+     */
+    public ExecutionContext fork() {
+        return fork(cancellationToken);
+    }
+
+    /**
+     * Same as {@link #fork()} but the child observes {@code token}, typically a {@link CancellationToken#child()}
+     * of this context's token so a group of forks can be cancelled without cancelling the parent.
+     */
+    public ExecutionContext fork(CancellationToken token) {
+        var child = new ExecutionContext(registry, workingDirectory, token);
+        child.attributes.putAll(attributes);
+        child.sharedAttributes = sharedAttributes;
+        child.childRunner = childRunner;
+        child.slotRunner = slotRunner;
+        child.rawInputStack.addAll(rawInputStack);
+        child.resultCache = resultCache;
+        return child;
+    }
+
+    public CancellationToken cancellationToken() {
+        return cancellationToken;
+    }
+
     public Registry registry() {
         return registry;
     }
 
+    /**
+     * Runs {@code action} with {@code scoped} (usually an {@link Registry#overlay()} of the current registry)
+     * as this context's registry, restoring the previous one afterwards. Forks taken meanwhile inherit it.
+     */
+    public <T> T withRegistry(Registry scoped, Callable<T> action) throws Exception {
+        var previous = registry;
+        registry = Objects.requireNonNull(scoped, "registry");
+        try {
+            return action.call();
+        } finally {
+            registry = previous;
+        }
+    }
+
     public Path workingDirectory() {
         return workingDirectory;
     }
 
+    public ResultCache resultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the cache used to memoise components declared {@code pure}; forks taken afterwards share it.
+     */
+    public void setResultCache(ResultCache cache) {
+        this.resultCache = Objects.requireNonNull(cache, "cache");
+    }
+
     public Object getAttribute(String key) {
         return attributes.get(key);
     }
@@ -66,6 +128,23 @@ public final class ExecutionContext {
         }
     }
 
+    /**
+     * Returns the value stored under {@code key} for this context, the context it was forked from and all of their
+     * forks, creating it with {@code factory} on first use. Unlike {@link #setAttribute}, a value created inside
+     * a fork is visible to the parent, so it suits collectors such as captured logs.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T sharedAttribute(String key, Supplier<T> factory) {
+        return (T) sharedAttributes.computeIfAbsent(key, ignored -> factory.get());
+    }
+
+    /**
+     * Returns the {@link #sharedAttribute} stored under {@code key}, or {@code null} when none was created yet.
+     */
+    public Object getSharedAttribute(String key) {
+        return sharedAttributes.get(key);
+    }
+
     public void ensureNotCancelled() {
         if (cancellationToken.isCancelled()) {
             throw new KernelCancellationException("Execution cancelled");
@@ -76,19 +155,70 @@ public final class ExecutionContext {
         cancellationToken.cancel();
     }
 
-    public Object call(String id, Map<String, Object> input, StepMeta meta) throws Exception {
+    /**
+     * Runs a blocking {@code action}, interrupting the calling thread if this context gets cancelled meanwhile so
+     * interruptible I/O fails fast. A cancellation observed during or after the action surfaces as
+     * {@link KernelCancellationException}, whatever the action itself threw.
+     */
+    public <T> T interruptibly(Callable<T> action) throws Exception {
         ensureNotCancelled();
-        var entry = registry.get(id);
-        if (entry == null && id != null && id.startsWith("lcod://contract/")) {
-            var impl = registry.resolveBinding(id);
-            if (impl != null) {
-                entry = registry.get(impl);
+        var thread = Thread.currentThread();
+        var state = new int[1]; // 0 running, 1 interrupted, 2 done
+        try (var ignored = cancellationToken.onCancel(() -> {
+            synchronized (state) {
+                if (state[0] == 0) {
+                    state[0] = 1;
+                    thread.interrupt();
+                }
+            }
+        })) {
+            T result = action.call();
+            ensureNotCancelled();
+            return result;
+        } catch (KernelCancellationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            if (cancellationToken.isCancelled()) {
+                var cancelled = new KernelCancellationException("Execution cancelled");
+                cancelled.initCause(ex);
+                throw cancelled;
+            }
+            throw ex;
+        } finally {
+            synchronized (state) {
+                if (state[0] == 1) {
+                    // Clear the interrupt raised above; the cancellation is reported by the exception instead.
+                    Thread.interrupted();
+                }
+                state[0] = 2;
             }
         }
+    }
+
+    public Object call(String id, Map<String, Object> input, StepMeta meta) throws Exception {
+        ensureNotCancelled();
+        return invoke(id, registry.lookup(id), input, meta);
+    }
+
+    Object call(CallSite site, Map<String, Object> input, StepMeta meta) throws Exception {
+        ensureNotCancelled();
+        return invoke(site.id(), site.resolve(registry), input, meta);
+    }
+
+    private Object invoke(String id, Registry.Entry entry, Map<String, Object> input, StepMeta meta) throws Exception {
         if (entry == null) {
             throw new IllegalStateException("Function not registered: " + id);
         }
         PreparedInput prepared = prepareInput(input, entry.metadata());
+        String cacheKey = cacheKey(id, entry, prepared, meta);
+        // Without a definition fingerprint the key only holds for this registration, so it stays in memory.
+        ResultCache cache = cacheKey != null && entry.metadata().fingerprint() == null ? ResultCache.memoryOnly() : resultCache;
+        if (cacheKey != null) {
+            Object cached = cache.get(cacheKey);
+            if (cached != ResultCache.MISS) {
+                return cached;
+            }
+        }
         if (prepared.raw() != null) {
             rawInputStack.push(prepared.raw());
         }
@@ -103,9 +233,27 @@ public final class ExecutionContext {
         if (entry.outputs() != null && !entry.outputs().isEmpty() && result instanceof Map<?, ?> map) {
             result = filterOutputs(map, entry.outputs());
         }
+        if (cacheKey != null) {
+            cache.put(cacheKey, result);
+        }
         return result;
     }
 
+    /**
+     * Pure components are memoised on their definition and sanitised input, unless the step hands them slots to
+     * run. Components without a fingerprint are keyed by their registration instead.
+     */
+    private static String cacheKey(String id, Registry.Entry entry, PreparedInput prepared, StepMeta meta) {
+        if (entry.metadata() == null || !entry.metadata().isPure()) {
+            return null;
+        }
+        if (meta != null && !meta.slots().isEmpty()) {
+            return null;
+        }
+        String fingerprint = entry.metadata().fingerprint();
+        return ResultCache.key(id, fingerprint != null ? fingerprint : "registration:" + entry.registration(), prepared.sanitized());
+    }
+
     ChildRunner childRunner() {
         return childRunner;
     }
@@ -123,17 +271,17 @@ public final class ExecutionContext {
     }
 
     boolean isDefaultSlotRunner(SlotRunner runner) {
-        return runner == defaultSlotRunner;
+        return runner == DEFAULT_SLOT_RUNNER;
     }
 
     public Map<String, Object> runChildren(List<Map<String, Object>> steps, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception {
         ensureNotCancelled();
-        return childRunner.runChildren(steps, localState, slotVars);
+        return childRunner.runChildren(this, steps, localState, slotVars);
     }
 
     public Map<String, Object> runSlot(String slotName, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception {
         ensureNotCancelled();
-        return slotRunner.runSlot(slotName, localState, slotVars);
+        return slotRunner.runSlot(this, slotName, localState, slotVars);
     }
 
     void pushScope() {
@@ -162,23 +310,81 @@ public final class ExecutionContext {
         scopeStack.peek().add(cleanup);
     }
 
+    /**
+     * Runs child steps on behalf of the context passed in, which may be a {@link #fork()} of the context the
+     * runner was installed on.
+     */
     public interface ChildRunner {
-        Map<String, Object> runChildren(List<Map<String, Object>> steps, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception;
+        Map<String, Object> runChildren(ExecutionContext ctx, List<Map<String, Object>> steps, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception;
     }
 
     public interface SlotRunner {
-        Map<String, Object> runSlot(String slotName, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception;
+        Map<String, Object> runSlot(ExecutionContext ctx, String slotName, Map<String, Object> localState, Map<String, Object> slotVars) throws Exception;
     }
 
     public static final class CancellationToken {
+        private final CancellationToken parent;
+        private final Set<Runnable> listeners = ConcurrentHashMap.newKeySet();
         private volatile boolean cancelled = false;
 
+        public CancellationToken() {
+            this(null);
+        }
+
+        private CancellationToken(CancellationToken parent) {
+            this.parent = parent;
+        }
+
+        /**
+         * Returns a token that is cancelled together with this one but can also be cancelled on its own.
+         */
+        public CancellationToken child() {
+            return new CancellationToken(this);
+        }
+
         public void cancel() {
             this.cancelled = true;
+            for (Runnable listener : listeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException ignored) {
+                    // cancellation hooks are best-effort
+                }
+            }
         }
 
         public boolean isCancelled() {
-            return cancelled;
+            return cancelled || (parent != null && parent.isCancelled());
+        }
+
+        /**
+         * Runs {@code callback} once when this token or one of its parents is cancelled (right away if it
+         * already is). Closing the returned registration drops the callback.
+         */
+        public Registration onCancel(Runnable callback) {
+            var fired = new AtomicBoolean();
+            Runnable once = () -> {
+                if (fired.compareAndSet(false, true)) {
+                    callback.run();
+                }
+            };
+            for (var token = this; token != null; token = token.parent) {
+                token.listeners.add(once);
+            }
+            if (isCancelled()) {
+                once.run();
+            }
+            return () -> {
+                for (var token = this; token != null; token = token.parent) {
+                    token.listeners.remove(once);
+                }
+            };
+        }
+
+        @FunctionalInterface
+        public interface Registration extends AutoCloseable {
+            @Override
+            void close();
         }
     }
 
@@ -0,0 +1,189 @@
+package work.lcod.kernel.runtime;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloads remote composes through one shared {@link HttpClient}, optionally keeping them under a cache
+ * directory ({@code <sha256(uri)>.body} plus a {@code .meta.json} with the validators). A cached copy younger
+ * than the TTL is used as is; older copies are revalidated with {@code If-None-Match}/{@code If-Modified-Since}
+ * so unchanged composes cost a 304. Offline mode only serves cached copies. Concurrent fetches of the same
+ * URI share one request; every request is bounded by {@code -Dlcod.http.timeoutMs} (60 s by default).
+ */
+final class HttpComposeCache {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .connectTimeout(Duration.ofSeconds(30))
+        .build();
+    // Bounds the whole exchange, not just the connect: a server that stalls mid-response must not hang the run.
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMillis(Math.max(1, Long.getLong("lcod.http.timeoutMs", 60_000L)));
+    private static final Map<String, CompletableFuture<byte[]>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private HttpComposeCache() {}
+
+    /**
+     * Returns the compose body for {@code uri}. {@code cacheDirectory} may be {@code null} to skip the disk cache.
+     * Callers joining another thread's fetch wait interruptibly; if that thread is interrupted they fetch again
+     * themselves rather than failing with an interruption that was not theirs.
+     */
+    static byte[] fetch(URI uri, Path cacheDirectory, Duration ttl, boolean offline) throws IOException, InterruptedException {
+        String key = (cacheDirectory == null ? "" : cacheDirectory.toAbsolutePath().normalize() + "|") + uri;
+        while (true) {
+            var mine = new CompletableFuture<byte[]>();
+            var existing = IN_FLIGHT.putIfAbsent(key, mine);
+            if (existing != null) {
+                try {
+                    return await(existing);
+                } catch (AbandonedFetch ex) {
+                    continue;
+                }
+            }
+            try {
+                byte[] body = load(uri, cacheDirectory, ttl, offline);
+                mine.complete(body);
+                return body;
+            } catch (InterruptedException ex) {
+                mine.completeExceptionally(new AbandonedFetch(uri, ex));
+                throw ex;
+            } catch (IOException | RuntimeException ex) {
+                mine.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                IN_FLIGHT.remove(key, mine);
+            }
+        }
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static byte[] load(URI uri, Path cacheDirectory, Duration ttl, boolean offline) throws IOException, InterruptedException {
+        if (cacheDirectory == null) {
+            if (offline) {
+                throw new IOException("offline and no cache directory configured");
+            }
+            return send(uri, Map.of()).body();
+        }
+        String name = sha256(uri.toString());
+        Path body = cacheDirectory.resolve(name + ".body");
+        Path metaFile = cacheDirectory.resolve(name + ".meta.json");
+        Map<String, Object> meta = readMeta(metaFile);
+        boolean cached = meta != null && Files.isRegularFile(body);
+        if (offline) {
+            if (!cached) {
+                throw new IOException("offline and not cached");
+            }
+            return Files.readAllBytes(body);
+        }
+        if (cached && isFresh(meta, ttl)) {
+            return Files.readAllBytes(body);
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (cached && meta.get("etag") instanceof String etag) {
+            headers.put("If-None-Match", etag);
+        }
+        if (cached && meta.get("lastModified") instanceof String lastModified) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        HttpResponse<byte[]> response = send(uri, headers);
+        if (response.statusCode() == 304 && cached) {
+            meta.put("fetchedAt", Instant.now().toString());
+            AtomicFiles.write(metaFile, JSON.writeValueAsBytes(meta));
+            return Files.readAllBytes(body);
+        }
+        Map<String, Object> fresh = new LinkedHashMap<>();
+        fresh.put("uri", uri.toString());
+        response.headers().firstValue("ETag").ifPresent(value -> fresh.put("etag", value));
+        response.headers().firstValue("Last-Modified").ifPresent(value -> fresh.put("lastModified", value));
+        fresh.put("fetchedAt", Instant.now().toString());
+        // Body first: a reader seeing the new validators must also see the matching body.
+        AtomicFiles.write(body, response.body());
+        AtomicFiles.write(metaFile, JSON.writeValueAsBytes(fresh));
+        return response.body();
+    }
+
+    private static HttpResponse<byte[]> send(URI uri, Map<String, String> headers) throws IOException, InterruptedException {
+        var builder = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET();
+        headers.forEach(builder::header);
+        HttpResponse<byte[]> response = CLIENT.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        if (status != 304 && (status < 200 || status >= 300)) {
+            throw new IOException("HTTP " + status);
+        }
+        return response;
+    }
+
+    private static boolean isFresh(Map<String, Object> meta, Duration ttl) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative() || !(meta.get("fetchedAt") instanceof String fetchedAt)) {
+            return false;
+        }
+        try {
+            return Instant.parse(fetchedAt).plus(ttl).isAfter(Instant.now());
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static Map<String, Object> readMeta(Path metaFile) {
+        if (!Files.isRegularFile(metaFile)) {
+            return null;
+        }
+        try {
+            return new LinkedHashMap<>(JSON.readValue(metaFile.toFile(), MAP_TYPE));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Handed to threads that joined a fetch whose initiator was interrupted: they retry instead of failing.
+     */
+    private static final class AbandonedFetch extends IOException {
+        private AbandonedFetch(URI uri, InterruptedException cause) {
+            super("Download of " + uri + " was interrupted", cause);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
+        }
+    }
+}
@@ -17,9 +17,36 @@ import work.lcod.kernel.tooling.ToolingPrimitives;
  * Shared registry bootstrap so CLI, spec runner, and tests use the same helper set.
  */
 public final class KernelRegistry {
+    private static volatile Registry base;
+
     private KernelRegistry() {}
 
+    /**
+     * Returns a fresh registry for one run, layered over the shared base so per-run registrations
+     * ({@code resolver/register}, {@code registry/scope} components) never reach other runs.
+     */
     public static Registry create() {
+        return base().overlay();
+    }
+
+    /**
+     * Process-wide frozen registry holding the built-in helpers; bootstrapped once on first use.
+     */
+    public static Registry base() {
+        var current = base;
+        if (current == null) {
+            synchronized (KernelRegistry.class) {
+                current = base;
+                if (current == null) {
+                    current = bootstrap().freeze();
+                    base = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static Registry bootstrap() {
         var registry = new Registry();
         RuntimeBootstrap.ensureRuntime();
         registry.register("lcod://kernel/log@1", (ctx, input, meta) -> Map.of());
@@ -34,7 +61,6 @@ public final class KernelRegistry {
         ToolingPrimitives.register(registry);
         AxiomPrimitives.register(registry);
         SpecComponentRegistry.register(registry);
-        ToolingPrimitives.register(registry);
         return registry;
     }
 }
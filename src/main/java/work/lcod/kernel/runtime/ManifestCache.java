@@ -0,0 +1,132 @@
+package work.lcod.kernel.runtime;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.tomlj.Toml;
+import org.tomlj.TomlParseResult;
+
+/**
+ * Process-wide cache of parsed {@code lcp.toml}/{@code workspace.lcp.toml} manifests and of workspace manifest
+ * lookups. Parsed manifests are reused while the file's modification time and size are unchanged; the
+ * "does this directory hold a workspace manifest" probe is reused while the directory's modification time is
+ * unchanged, which is what creating or deleting the manifest bumps. Callers that key on-disk caches by manifest
+ * content read the bytes themselves and use {@link #parse(Path, byte[])}, which cannot serve a same-size rewrite
+ * that kept its modification time.
+ */
+public final class ManifestCache {
+    public static final String WORKSPACE_MANIFEST = "workspace.lcp.toml";
+
+    private static final Map<Path, Manifest> MANIFESTS = new ConcurrentHashMap<>();
+    private static final Map<Path, Probe> PROBES = new ConcurrentHashMap<>();
+
+    private ManifestCache() {}
+
+    /**
+     * Returns the parsed manifest at {@code path}, or {@code null} when it is missing, unreadable or invalid.
+     */
+    public static TomlParseResult parse(Path path) {
+        Manifest manifest = load(path);
+        return manifest == null ? null : manifest.parsed();
+    }
+
+    /**
+     * Parses {@code content}, the bytes just read from {@code path}, reusing the cached parse of {@code path} when
+     * its text is identical. Returns {@code null} when {@code content} is {@code null} or not valid TOML.
+     */
+    public static TomlParseResult parse(Path path, byte[] content) {
+        if (content == null) {
+            return null;
+        }
+        String text = new String(content, StandardCharsets.UTF_8);
+        Manifest cached = path == null ? null : MANIFESTS.get(path.toAbsolutePath().normalize());
+        if (cached != null && text.equals(cached.text())) {
+            return cached.parsed();
+        }
+        TomlParseResult result = Toml.parse(text);
+        return result.hasErrors() ? null : result;
+    }
+
+    /**
+     * Finds the nearest {@code workspace.lcp.toml} in {@code directory} or one of its ancestors.
+     */
+    public static Path findWorkspaceManifest(Path directory) {
+        Path root = findWorkspaceRoot(directory, Integer.MAX_VALUE);
+        return root == null ? null : root.resolve(WORKSPACE_MANIFEST);
+    }
+
+    /**
+     * Returns the nearest directory, at most {@code maxDepth} levels up from {@code directory}, that holds a
+     * {@code workspace.lcp.toml}.
+     */
+    public static Path findWorkspaceRoot(Path directory, int maxDepth) {
+        if (directory == null) {
+            return null;
+        }
+        Path current = directory.toAbsolutePath().normalize();
+        for (int depth = 0; depth < maxDepth && current != null; depth++) {
+            if (hasWorkspaceManifest(current)) {
+                return current;
+            }
+            current = current.getParent();
+        }
+        return null;
+    }
+
+    private static boolean hasWorkspaceManifest(Path directory) {
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(directory);
+        } catch (IOException ex) {
+            PROBES.remove(directory);
+            return false;
+        }
+        Probe cached = PROBES.get(directory);
+        if (cached != null && modified.equals(cached.directoryModified())) {
+            return cached.found();
+        }
+        boolean found = Files.isRegularFile(directory.resolve(WORKSPACE_MANIFEST));
+        PROBES.put(directory, new Probe(modified, found));
+        return found;
+    }
+
+    private static Manifest load(Path path) {
+        if (path == null) {
+            return null;
+        }
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            MANIFESTS.remove(key);
+            return null;
+        }
+        if (!attrs.isRegularFile()) {
+            return null;
+        }
+        FileTime modified = attrs.lastModifiedTime();
+        Manifest cached = MANIFESTS.get(key);
+        if (cached != null && modified.equals(cached.modified()) && cached.size() == attrs.size()) {
+            return cached;
+        }
+        try {
+            String text = Files.readString(key);
+            TomlParseResult result = Toml.parse(text);
+            var manifest = new Manifest(modified, attrs.size(), text, result.hasErrors() ? null : result);
+            MANIFESTS.put(key, manifest);
+            return manifest;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private record Manifest(FileTime modified, long size, String text, TomlParseResult parsed) {}
+
+    private record Probe(FileTime directoryModified, boolean found) {}
+}
@@ -1,18 +1,65 @@
 package work.lcod.kernel.runtime;
 
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Stores kernel functions and contract bindings.
+ * Stores kernel functions and contract bindings. A registry can be frozen and used as the shared base of
+ * cheap {@link #overlay()} registries: lookups fall through to the base, registrations stay in the overlay.
  */
 public final class Registry {
     static final String RAW_INPUT_KEY = "__lcod_input__";
 
+    private final Registry base;
     private final Map<String, Entry> functions = new ConcurrentHashMap<>();
     private volatile Map<String, String> bindings = Map.of();
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean frozen;
+    private volatile boolean forwarding;
+
+    public Registry() {
+        this(null);
+    }
+
+    private Registry(Registry base) {
+        this.base = base;
+    }
+
+    /**
+     * Creates an empty registry layered on top of this one. Entries and bindings registered on the overlay
+     * shadow the ones of this registry, which is never modified through it.
+     */
+    public Registry overlay() {
+        return new Registry(this);
+    }
+
+    /**
+     * Makes this registry read-only so it can be shared across threads and runs as an overlay base.
+     */
+    public Registry freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Seals an overlay used as a scope: the entries and bindings it already holds stay local to it, while later
+     * registrations and removals go to the registry it was created from, exactly as they would outside the scope.
+     */
+    public Registry forwardRegistrations() {
+        if (base == null) {
+            throw new IllegalStateException("Only overlays can forward registrations");
+        }
+        forwarding = true;
+        return this;
+    }
 
     public Registry register(String id, KernelFunction fn) {
         return register(id, fn, null, null);
@@ -23,43 +70,119 @@ public final class Registry {
     }
 
     public Registry register(String id, KernelFunction fn, List<String> outputs, ComponentMetadata metadata) {
+        if (forwarding) {
+            base.register(id, fn, outputs, metadata);
+            return this;
+        }
+        ensureMutable();
         List<String> normalized = (outputs == null || outputs.isEmpty())
             ? List.of()
             : List.copyOf(outputs);
         functions.put(id, new Entry(id, fn, normalized, metadata));
+        version.incrementAndGet();
         return this;
     }
 
     public Registry setBindings(Map<String, String> newBindings) {
+        ensureMutable();
         if (newBindings == null || newBindings.isEmpty()) {
             this.bindings = Map.of();
         } else {
             this.bindings = Collections.unmodifiableMap(new ConcurrentHashMap<>(newBindings));
         }
+        version.incrementAndGet();
         return this;
     }
 
     public String resolveBinding(String contractId) {
-        return bindings.get(contractId);
+        var impl = bindings.get(contractId);
+        if (impl == null && base != null) {
+            impl = base.resolveBinding(contractId);
+        }
+        return impl;
     }
 
     public Map<String, String> bindings() {
-        return bindings;
+        if (base == null) {
+            return bindings;
+        }
+        var inherited = base.bindings();
+        if (inherited.isEmpty()) {
+            return bindings;
+        }
+        var merged = new LinkedHashMap<>(inherited);
+        merged.putAll(bindings);
+        return Collections.unmodifiableMap(merged);
     }
 
     public Entry get(String id) {
-        return functions.get(id);
+        var entry = functions.get(id);
+        if (entry == null && base != null) {
+            entry = base.get(id);
+        }
+        return entry;
+    }
+
+    /**
+     * Resolves {@code id} to an entry, falling back to the bound implementation for contract ids.
+     */
+    public Entry lookup(String id) {
+        var entry = get(id);
+        if (entry == null && id != null && id.startsWith("lcod://contract/")) {
+            var impl = resolveBinding(id);
+            if (impl != null) {
+                entry = get(impl);
+            }
+        }
+        return entry;
     }
 
+    /**
+     * Removes an entry registered on this registry; entries inherited from an overlay base are left untouched
+     * (unless this overlay {@link #forwardRegistrations() forwards} to its base).
+     */
     public void unregister(String id) {
-        if (id != null) {
-            functions.remove(id);
+        if (forwarding) {
+            base.unregister(id);
+            return;
         }
+        ensureMutable();
+        if (id != null && functions.remove(id) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Monotonic counter bumped on every registration or binding change (including the base of an overlay);
+     * used to validate cached lookups.
+     */
+    long version() {
+        return base == null ? version.get() : version.get() + base.version();
     }
 
     public Map<String, Entry> entries() {
-        return Collections.unmodifiableMap(functions);
+        if (base == null) {
+            return Collections.unmodifiableMap(functions);
+        }
+        var merged = new LinkedHashMap<>(base.entries());
+        merged.putAll(functions);
+        return Collections.unmodifiableMap(merged);
+    }
+
+    private void ensureMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Registry is frozen; register into an overlay() instead");
+        }
     }
 
-    public record Entry(String id, KernelFunction function, List<String> outputs, ComponentMetadata metadata) {}
+    /**
+     * A registered function. {@code registration} is unique per registration within the process.
+     */
+    public record Entry(String id, KernelFunction function, List<String> outputs, ComponentMetadata metadata, long registration) {
+        private static final AtomicLong REGISTRATIONS = new AtomicLong();
+
+        public Entry(String id, KernelFunction function, List<String> outputs, ComponentMetadata metadata) {
+            this(id, function, outputs, metadata, REGISTRATIONS.incrementAndGet());
+        }
+    }
 }
@@ -0,0 +1,183 @@
+package work.lcod.kernel.runtime;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Memoises outputs of components whose metadata marks them pure. Entries are keyed by a SHA-256 of the
+ * component id (which carries its version), a fingerprint of its definition and the canonical JSON of its
+ * input. A process-wide LRU is
+ * shared by every cache; caches created with a directory add an on-disk tier so results survive restarts.
+ * Only plain JSON values (maps, lists, strings, numbers, booleans, null) are cached; anything else skips
+ * the cache. Cached values are handed out as copy-on-write views so callers cannot corrupt them.
+ */
+public final class ResultCache {
+    /**
+     * Returned by {@link #get(String)} when nothing is cached under the key.
+     */
+    public static final Object MISS = new Object();
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Object> ANY = new TypeReference<>() {};
+    private static final int MEMORY_LIMIT = Integer.getInteger("lcod.resultCache.entries", 1024);
+    private static final Map<String, Object> MEMORY = Collections.synchronizedMap(
+        new LinkedHashMap<String, Object>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > MEMORY_LIMIT;
+            }
+        }
+    );
+    private static final ResultCache MEMORY_ONLY = new ResultCache(null);
+    private static final Object NOT_CACHEABLE = new Object();
+
+    private final Path directory;
+
+    private ResultCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static ResultCache memoryOnly() {
+        return MEMORY_ONLY;
+    }
+
+    public static ResultCache withDirectory(Path directory) {
+        return directory == null ? MEMORY_ONLY : new ResultCache(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the cache key for calling {@code id}, whose definition has {@code fingerprint}, with {@code input},
+     * or {@code null} when the input holds values that have no canonical JSON form.
+     */
+    public static String key(String id, String fingerprint, Map<String, Object> input) {
+        Object canonical = canonical(input == null ? Map.of() : input, true);
+        if (canonical == NOT_CACHEABLE) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(JSON.writeValueAsBytes(canonical));
+            return hex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Fingerprints an in-memory component definition (e.g. an inline component with its compose steps) by the
+     * SHA-256 of its canonical JSON, or returns {@code null} when it has no canonical JSON form.
+     */
+    public static String fingerprint(Object definition) {
+        Object canonical = canonical(definition, true);
+        if (canonical == NOT_CACHEABLE) {
+            return null;
+        }
+        try {
+            return "sha256-" + hex(MessageDigest.getInstance("SHA-256").digest(JSON.writeValueAsBytes(canonical)));
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            return null;
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        return HexFormat.of().formatHex(hash);
+    }
+
+    public Object get(String key) {
+        Object value = MEMORY.get(key);
+        if (value == null && directory != null) {
+            value = readFromDisk(key);
+            if (value != null) {
+                MEMORY.put(key, value);
+            }
+        }
+        return value == null ? MISS : StateValues.share(value);
+    }
+
+    public void put(String key, Object value) {
+        Object copy = canonical(value, false);
+        if (copy == NOT_CACHEABLE || copy == null) {
+            return;
+        }
+        MEMORY.put(key, copy);
+        if (directory != null) {
+            writeToDisk(key, copy);
+        }
+    }
+
+    private Object readFromDisk(String key) {
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return JSON.readValue(file.toFile(), ANY);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Object value) {
+        try {
+            AtomicFiles.write(fileFor(key), JSON.writeValueAsBytes(value));
+        } catch (IOException ignored) {
+            // the disk tier is best-effort; the value stays in memory
+        }
+    }
+
+    private Path fileFor(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    /**
+     * Deep-copies a plain JSON {@code value} (with map keys sorted when {@code sorted}, as used for hashing), or
+     * returns {@link #NOT_CACHEABLE}.
+     */
+    private static Object canonical(Object value, boolean sorted) {
+        if (value == null || value instanceof String || value instanceof Boolean
+            || value instanceof Integer || value instanceof Long || value instanceof Double
+            || value instanceof Float || value instanceof Short || value instanceof Byte) {
+            return value;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> copy = sorted ? new TreeMap<>() : new LinkedHashMap<>();
+            for (var entry : map.entrySet()) {
+                Object item = canonical(entry.getValue(), sorted);
+                if (item == NOT_CACHEABLE) {
+                    return NOT_CACHEABLE;
+                }
+                copy.put(String.valueOf(entry.getKey()), item);
+            }
+            return copy;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                Object item = canonical(element, sorted);
+                if (item == NOT_CACHEABLE) {
+                    return NOT_CACHEABLE;
+                }
+                copy.add(item);
+            }
+            return copy;
+        }
+        return NOT_CACHEABLE;
+    }
+}
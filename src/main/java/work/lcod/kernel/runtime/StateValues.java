@@ -0,0 +1,291 @@
+package work.lcod.kernel.runtime;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Copy-on-write views over compose state values. Reading a binding hands out a view that shares the
+ * underlying maps and lists; the first write to a view copies only that level (nested containers are
+ * re-wrapped lazily), so callers can mutate what they receive without touching the shared state and
+ * without the whole subtree being deep-copied up front. Views may be handed to parallel forks, so the lazy
+ * copy is taken once under the view's lock and published through a volatile field.
+ */
+public final class StateValues {
+    private StateValues() {}
+
+    /**
+     * Returns a copy-on-write view of {@code value} when it is a map or list, or the value itself otherwise.
+     */
+    public static Object share(Object value) {
+        if (value instanceof SharedMap shared) {
+            return new SharedMap(shared.stable());
+        }
+        if (value instanceof SharedList shared) {
+            return new SharedList(shared.stable());
+        }
+        if (value instanceof Map<?, ?> map) {
+            return new SharedMap(map);
+        }
+        if (value instanceof List<?> list) {
+            return new SharedList(list);
+        }
+        return value;
+    }
+
+    /**
+     * Shares the current entries of {@code state}: the top level is copied so later writes to the state
+     * are not observed, nested values are shared lazily.
+     */
+    public static Map<String, Object> snapshot(Map<String, Object> state) {
+        if (state == null) {
+            return new LinkedHashMap<>();
+        }
+        return new SharedMap(new LinkedHashMap<>(state));
+    }
+
+    private static boolean isContainer(Object value) {
+        return value instanceof Map<?, ?> || value instanceof List<?>;
+    }
+
+    /**
+     * Contents of a view that later writes through it will not reach: views that already copied their level
+     * are copied again (only the levels that were written), untouched views hand out their shared source.
+     */
+    private static Object stable(Object value) {
+        if (value instanceof SharedMap shared) {
+            return shared.stable();
+        }
+        if (value instanceof SharedList shared) {
+            return shared.stable();
+        }
+        return value;
+    }
+
+    private static final class SharedMap extends AbstractMap<String, Object> {
+        private final Map<?, ?> source;
+        private volatile LinkedHashMap<String, Object> local;
+
+        private SharedMap(Map<?, ?> source) {
+            this.source = source;
+        }
+
+        private Map<?, ?> current() {
+            var owned = local;
+            return owned != null ? owned : source;
+        }
+
+        private Map<?, ?> stable() {
+            var owned = local;
+            if (owned == null) {
+                return source;
+            }
+            var copy = new LinkedHashMap<String, Object>(Math.max(16, owned.size() * 2));
+            for (var entry : owned.entrySet()) {
+                copy.put(entry.getKey(), StateValues.stable(entry.getValue()));
+            }
+            return copy;
+        }
+
+        private LinkedHashMap<String, Object> own() {
+            var owned = local;
+            if (owned != null) {
+                return owned;
+            }
+            synchronized (this) {
+                if (local == null) {
+                    var copy = new LinkedHashMap<String, Object>(Math.max(16, source.size() * 2));
+                    for (var entry : source.entrySet()) {
+                        copy.put(String.valueOf(entry.getKey()), share(entry.getValue()));
+                    }
+                    local = copy;
+                }
+                return local;
+            }
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return current().isEmpty();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return current().containsKey(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            var owned = local;
+            var value = (owned != null ? owned : source).get(key);
+            if (owned == null && isContainer(value)) {
+                // Nested containers must stay the same view across reads so writes through them stick.
+                return own().get(key);
+            }
+            return value;
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            return own().put(key, value);
+        }
+
+        @Override
+        public Object remove(Object key) {
+            return own().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            own().clear();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return SharedMap.this.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    var owned = local;
+                    if (owned != null) {
+                        return owned.entrySet().iterator();
+                    }
+                    return new SourceIterator(source.entrySet().iterator());
+                }
+            };
+        }
+
+        /**
+         * Iterates the shared source without copying it, so reads such as serialisation, equals and hashCode stay
+         * cheap. Nested containers come back as detached views; writes through an entry copy this level first.
+         */
+        private final class SourceIterator implements Iterator<Entry<String, Object>> {
+            private final Iterator<? extends Entry<?, ?>> entries;
+            private String lastKey;
+
+            private SourceIterator(Iterator<? extends Entry<?, ?>> entries) {
+                this.entries = entries;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+                var entry = entries.next();
+                String key = String.valueOf(entry.getKey());
+                lastKey = key;
+                return new SimpleEntry<>(key, share(entry.getValue())) {
+                    @Override
+                    public Object setValue(Object value) {
+                        super.setValue(value);
+                        return own().put(key, value);
+                    }
+                };
+            }
+
+            @Override
+            public void remove() {
+                if (lastKey == null) {
+                    throw new IllegalStateException();
+                }
+                own().remove(lastKey);
+                lastKey = null;
+            }
+        }
+    }
+
+    private static final class SharedList extends AbstractList<Object> implements RandomAccess {
+        private final List<?> source;
+        private volatile ArrayList<Object> local;
+
+        private SharedList(List<?> source) {
+            this.source = source;
+        }
+
+        private List<?> current() {
+            var owned = local;
+            return owned != null ? owned : source;
+        }
+
+        private List<?> stable() {
+            var owned = local;
+            if (owned == null) {
+                return source;
+            }
+            var copy = new ArrayList<Object>(owned.size());
+            for (var item : owned) {
+                copy.add(StateValues.stable(item));
+            }
+            return copy;
+        }
+
+        private ArrayList<Object> own() {
+            var owned = local;
+            if (owned != null) {
+                return owned;
+            }
+            synchronized (this) {
+                if (local == null) {
+                    var copy = new ArrayList<Object>(source.size());
+                    for (var item : source) {
+                        copy.add(share(item));
+                    }
+                    local = copy;
+                }
+                return local;
+            }
+        }
+
+        @Override
+        public int size() {
+            return current().size();
+        }
+
+        @Override
+        public Object get(int index) {
+            var owned = local;
+            var value = (owned != null ? owned : source).get(index);
+            if (owned == null && isContainer(value)) {
+                return own().get(index);
+            }
+            return value;
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            return own().set(index, element);
+        }
+
+        @Override
+        public void add(int index, Object element) {
+            own().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public Object remove(int index) {
+            var removed = own().remove(index);
+            modCount++;
+            return removed;
+        }
+    }
+}
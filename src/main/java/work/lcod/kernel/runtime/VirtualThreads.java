@@ -0,0 +1,31 @@
+package work.lcod.kernel.runtime;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for the kernel's blocking background work. The build targets Java 17, so the virtual-thread executor
+ * is looked up reflectively and used when running on Java 21+; older runtimes get a cached pool of daemon threads.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {}
+
+    /**
+     * Returns a thread-per-task executor; {@code namePrefix} names the fallback platform threads.
+     */
+    public static ExecutorService newExecutor(String namePrefix) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            var ids = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                var thread = new Thread(runnable, namePrefix + "-" + ids.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package work.lcod.kernel.tooling;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.tomlj.Toml;
+import org.tomlj.TomlArray;
+import org.tomlj.TomlParseResult;
+import work.lcod.kernel.runtime.AtomicFiles;
+import work.lcod.kernel.runtime.ExecutionContext;
+import work.lcod.kernel.runtime.VirtualThreads;
+
+/**
+ * Component descriptors ({@code lcp.toml}) as seen by {@code resolve_dependencies}: the {@code deps.requires} list
+ * and the {@code sha256-} integrity of the file. Descriptors are cached for the whole process and reused while the
+ * file's modification time and size are unchanged. Each resolve also persists the descriptors it used to
+ * {@value #CACHE_FILE} in the project's cache directory, so a later process resolving an unchanged workspace only
+ * stats the manifests. {@link #prefetch} walks the dependency graph one level at a time, reading, parsing and
+ * hashing every descriptor of a level concurrently.
+ */
+final class ResolverDescriptors {
+    static final String CACHE_FILE = "resolver-descriptors.json";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final int FORMAT = 1;
+    private static final Map<Path, Cached> CACHE = new ConcurrentHashMap<>();
+    private static final Map<Path, Loaded> LOADED = new ConcurrentHashMap<>();
+    private static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("lcod-resolver");
+
+    private final Path cacheFile;
+    private final Map<Path, Cached> used = new ConcurrentHashMap<>();
+    private Set<Path> persisted = Set.of();
+    private volatile boolean dirty;
+
+    private ResolverDescriptors(Path cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Opens the descriptor cache persisted in {@code cacheDir}, seeding the process cache from it.
+     */
+    static ResolverDescriptors open(Path cacheDir) {
+        var descriptors = new ResolverDescriptors(cacheDir.resolve(CACHE_FILE).toAbsolutePath().normalize());
+        descriptors.load();
+        return descriptors;
+    }
+
+    static final class Descriptor {
+        final List<String> requires;
+        final String integrity;
+
+        Descriptor(List<String> requires, String integrity) {
+            this.requires = List.copyOf(requires);
+            this.integrity = integrity;
+        }
+    }
+
+    /**
+     * Returns the descriptor in {@code componentDir}, parsing and hashing it only when it changed on disk.
+     */
+    Descriptor read(Path componentDir) throws IOException {
+        Path canonical = componentDir.resolve("lcp.toml").toAbsolutePath().normalize();
+        BasicFileAttributes attrs = Files.readAttributes(canonical, BasicFileAttributes.class);
+        Cached cached = CACHE.get(canonical);
+        if (cached != null && cached.modified().equals(attrs.lastModifiedTime()) && cached.size() == attrs.size()) {
+            used.put(canonical, cached);
+            return cached.descriptor();
+        }
+        String text = Files.readString(canonical, StandardCharsets.UTF_8);
+        TomlParseResult result = Toml.parse(text);
+        if (result.hasErrors()) {
+            throw new IllegalArgumentException("unable to parse descriptor at " + canonical);
+        }
+        List<String> requires = new ArrayList<>();
+        TomlArray depsArray = result.getArray("deps.requires");
+        if (depsArray != null) {
+            for (int i = 0; i < depsArray.size(); i++) {
+                String value = depsArray.getString(i);
+                if (value != null && !value.isBlank()) {
+                    requires.add(value);
+                }
+            }
+        }
+        var descriptor = new Descriptor(requires, integrity(text));
+        var entry = new Cached(attrs.lastModifiedTime(), attrs.size(), descriptor);
+        CACHE.put(canonical, entry);
+        used.put(canonical, entry);
+        dirty = true;
+        return descriptor;
+    }
+
+    /**
+     * Loads every descriptor reachable from {@code roots} into the cache. {@code locate} maps a dependency id to its
+     * component directory, or {@code null} for ids that are not resolved from descriptors. Failures are left for
+     * the sequential walk that follows, which reports them in dependency order.
+     */
+    void prefetch(ExecutionContext ctx, Collection<String> roots, Function<String, Path> locate) {
+        Set<String> seen = new HashSet<>();
+        List<String> frontier = new ArrayList<>(roots);
+        while (!frontier.isEmpty()) {
+            ctx.ensureNotCancelled();
+            List<CompletableFuture<Descriptor>> level = new ArrayList<>();
+            for (String id : frontier) {
+                if (!seen.add(id)) {
+                    continue;
+                }
+                Path dir;
+                try {
+                    dir = locate.apply(id);
+                } catch (RuntimeException ex) {
+                    continue;
+                }
+                if (dir != null) {
+                    level.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return read(dir);
+                        } catch (IOException | RuntimeException ex) {
+                            return null;
+                        }
+                    }, EXECUTOR));
+                }
+            }
+            List<String> next = new ArrayList<>();
+            for (var future : level) {
+                Descriptor descriptor = future.join();
+                if (descriptor != null) {
+                    next.addAll(descriptor.requires);
+                }
+            }
+            frontier = next;
+        }
+    }
+
+    /**
+     * Writes the descriptors used since {@link #open} to the cache file when they differ from what was loaded.
+     * A cache directory that cannot be written only costs the next process a re-parse.
+     */
+    void save() {
+        if (!dirty && persisted.equals(used.keySet())) {
+            return;
+        }
+        Map<String, Object> entries = new LinkedHashMap<>();
+        used.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .forEach(entry -> {
+                Cached cached = entry.getValue();
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("modified", cached.modified().to(TimeUnit.NANOSECONDS));
+                json.put("size", cached.size());
+                json.put("requires", cached.descriptor().requires);
+                json.put("integrity", cached.descriptor().integrity);
+                entries.put(entry.getKey().toString(), json);
+            });
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("format", FORMAT);
+        document.put("entries", entries);
+        try {
+            AtomicFiles.write(cacheFile, JSON.writeValueAsBytes(document));
+            Set<Path> written = Set.copyOf(used.keySet());
+            LOADED.put(cacheFile, new Loaded(Stamp.of(Files.readAttributes(cacheFile, BasicFileAttributes.class)), written));
+            persisted = written;
+            dirty = false;
+        } catch (IOException ex) {
+            // read-only project: the process cache still serves this run
+        }
+    }
+
+    private void load() {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(cacheFile, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            return;
+        }
+        Stamp stamp = Stamp.of(attrs);
+        Loaded loaded = LOADED.get(cacheFile);
+        if (loaded != null && loaded.stamp().equals(stamp)) {
+            // Already seeded from this exact file.
+            persisted = loaded.paths();
+            return;
+        }
+        Map<String, Object> document;
+        try {
+            document = JSON.readValue(cacheFile.toFile(), MAP_TYPE);
+        } catch (IOException ex) {
+            return;
+        }
+        if (!(document.get("format") instanceof Number format) || format.intValue() != FORMAT
+            || !(document.get("entries") instanceof Map<?, ?> entries)) {
+            return;
+        }
+        Set<Path> paths = new HashSet<>();
+        for (Map.Entry<?, ?> entry : entries.entrySet()) {
+            if (!(entry.getValue() instanceof Map<?, ?> json)
+                || !(json.get("modified") instanceof Number modified)
+                || !(json.get("size") instanceof Number size)
+                || !(json.get("requires") instanceof List<?> rawRequires)
+                || !(json.get("integrity") instanceof String integrity)) {
+                continue;
+            }
+            List<String> requires = new ArrayList<>();
+            for (Object value : rawRequires) {
+                if (value instanceof String str && !str.isBlank()) {
+                    requires.add(str);
+                }
+            }
+            Path path = Path.of(String.valueOf(entry.getKey()));
+            paths.add(path);
+            // read() validates every entry against the manifest, so an entry this process already holds is kept.
+            CACHE.putIfAbsent(path, new Cached(
+                FileTime.from(modified.longValue(), TimeUnit.NANOSECONDS),
+                size.longValue(),
+                new Descriptor(requires, integrity)
+            ));
+        }
+        persisted = Set.copyOf(paths);
+        LOADED.put(cacheFile, new Loaded(stamp, persisted));
+    }
+
+    static String integrity(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            return "sha256-" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
+        }
+    }
+
+    private record Cached(FileTime modified, long size, Descriptor descriptor) {}
+
+    private record Loaded(Stamp stamp, Set<Path> paths) {}
+
+    private record Stamp(FileTime modified, long size) {
+        static Stamp of(BasicFileAttributes attrs) {
+            return new Stamp(attrs.lastModifiedTime(), attrs.size());
+        }
+    }
+}
@@ -13,19 +13,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import org.tomlj.Toml;
 import org.tomlj.TomlArray;
 import org.tomlj.TomlParseResult;
 import org.tomlj.TomlTable;
 import work.lcod.kernel.runtime.ComponentMetadata;
 import work.lcod.kernel.runtime.ComponentMetadataLoader;
 import work.lcod.kernel.runtime.ComposeLoader;
+import work.lcod.kernel.runtime.ComposePlan;
 import work.lcod.kernel.runtime.ComposeRunner;
 import work.lcod.kernel.runtime.ExecutionContext;
+import work.lcod.kernel.runtime.ManifestCache;
 import work.lcod.kernel.runtime.Registry;
 import work.lcod.kernel.runtime.StepMeta;
 
@@ -35,7 +35,6 @@ import work.lcod.kernel.runtime.StepMeta;
  * execute composes directly from a checkout without publishing to a registry first.
  */
 final class ResolverHelperLoader {
-    private static final Map<Path, List<Map<String, Object>>> COMPOSE_CACHE = new ConcurrentHashMap<>();
     private static final Pattern PATH_SEPARATOR = Pattern.compile(Pattern.quote(String.valueOf(java.io.File.pathSeparatorChar)));
 
     private ResolverHelperLoader() {}
@@ -75,11 +74,11 @@ final class ResolverHelperLoader {
     }
 
     private static Object invokeHelper(HelperDefinition def, ExecutionContext ctx, Map<String, Object> input) throws Exception {
-        List<Map<String, Object>> steps = COMPOSE_CACHE.computeIfAbsent(def.composePath(), ComposeLoader::loadFromLocalFile);
+        ComposePlan plan = ComposeLoader.loadPlanFromLocalFile(def.composePath());
         Map<String, Object> initial = input == null
             ? new LinkedHashMap<>()
             : new LinkedHashMap<>(input);
-        return ComposeRunner.runSteps(ctx, steps, initial, Map.of());
+        return ComposeRunner.runSteps(ctx, plan, initial, Map.of());
     }
 
     private static List<HelperDefinition> collectDefinitions() {
@@ -137,7 +136,7 @@ final class ResolverHelperLoader {
 
         List<HelperDefinition> defs = new ArrayList<>();
         boolean handled = false;
-        Path workspaceManifest = root.resolve("workspace.lcp.toml");
+        Path workspaceManifest = root.resolve(ManifestCache.WORKSPACE_MANIFEST);
         if (Files.isRegularFile(workspaceManifest)) {
             defs.addAll(loadWorkspaceDefinitions(root, workspaceManifest));
             handled = true;
@@ -151,7 +150,7 @@ final class ResolverHelperLoader {
     }
 
     private static List<HelperDefinition> loadWorkspaceDefinitions(Path root, Path workspaceManifest) {
-        TomlParseResult workspaceToml = parseToml(workspaceManifest);
+        TomlParseResult workspaceToml = ManifestCache.parse(workspaceManifest);
         if (workspaceToml == null) {
             return List.of();
         }
@@ -204,7 +203,7 @@ final class ResolverHelperLoader {
 
     private static List<HelperDefinition> loadPackageDefinitions(Path packageDir, Map<String, String> workspaceAliases) {
         Path manifestPath = packageDir.resolve("lcp.toml");
-        TomlParseResult manifestToml = parseToml(manifestPath);
+        TomlParseResult manifestToml = ManifestCache.parse(manifestPath);
         if (manifestToml == null) {
             return List.of();
         }
@@ -250,7 +249,7 @@ final class ResolverHelperLoader {
     }
 
     private static HelperDefinition loadComponentDefinition(Path componentDir, Path manifestPath, Path composePath, HelperContext context) {
-        TomlParseResult manifestToml = parseToml(manifestPath);
+        TomlParseResult manifestToml = ManifestCache.parse(manifestPath);
         if (manifestToml == null) {
             return null;
         }
@@ -269,25 +268,11 @@ final class ResolverHelperLoader {
             aliases.add(rawId);
         }
 
-        ComponentMetadata metadata = ComponentMetadataLoader.fromToml(manifestToml).orElse(null);
+        ComponentMetadata metadata = ComponentMetadataLoader.fingerprinted(
+            ComponentMetadataLoader.fromToml(manifestToml).orElse(null), composePath, manifestPath);
         return new HelperDefinition(canonicalId, composePath.toAbsolutePath().normalize(), outputs, aliases, metadata);
     }
 
-    private static TomlParseResult parseToml(Path path) {
-        if (path == null || !Files.isRegularFile(path)) {
-            return null;
-        }
-        try {
-            TomlParseResult result = Toml.parse(Files.readString(path));
-            if (result.hasErrors()) {
-                return null;
-            }
-            return result;
-        } catch (IOException ex) {
-            return null;
-        }
-    }
-
     private static Map<String, String> readAliasMap(TomlTable table) {
         if (table == null) {
             return Map.of();
@@ -0,0 +1,157 @@
+package work.lcod.kernel.tooling;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of pre-initialised script sessions keyed by their configuration signature. At most
+ * {@code maxSize} sessions are checked out at once (callers wait for a free slot) and at most
+ * {@code maxSize} idle sessions are kept; the least recently returned ones are closed first.
+ * Callers that already run inside a script (on any thread, including forks of the calling context) pass
+ * {@code nested} and never wait: they get a throw-away session instead of deadlocking on their own permits.
+ */
+final class ScriptContextPool<T extends AutoCloseable> {
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Map<String, Deque<T>> idle = new HashMap<>();
+    private final Deque<String> idleOrder = new ArrayDeque<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    ScriptContextPool(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    Lease<T> acquire(String key, Supplier<T> factory, boolean nested) throws InterruptedException {
+        boolean pooled;
+        if (nested) {
+            pooled = permits.tryAcquire();
+        } else if (permits.tryAcquire()) {
+            pooled = true;
+        } else {
+            long started = System.nanoTime();
+            permits.acquire();
+            waitNanos.addAndGet(System.nanoTime() - started);
+            pooled = true;
+        }
+        if (!pooled) {
+            overflows.incrementAndGet();
+            misses.incrementAndGet();
+            return new Lease<>(key, factory.get(), false);
+        }
+        T value = takeIdle(key);
+        if (value != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            try {
+                value = factory.get();
+            } catch (RuntimeException | Error ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+        return new Lease<>(key, value, true);
+    }
+
+    /**
+     * Returns a session to the pool; sessions that cannot be reused (failed or timed-out runs) are closed.
+     */
+    void release(Lease<T> lease, boolean reusable) {
+        if (!lease.pooled()) {
+            closeQuietly(lease.value());
+            return;
+        }
+        try {
+            if (reusable) {
+                offerIdle(lease.key(), lease.value());
+            } else {
+                closeQuietly(lease.value());
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", maxSize);
+        stats.put("active", maxSize - permits.availablePermits());
+        synchronized (this) {
+            stats.put("idle", idleOrder.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("overflows", overflows.get());
+        stats.put("evictions", evictions.get());
+        stats.put("waitMs", waitNanos.get() / 1_000_000L);
+        return stats;
+    }
+
+    private synchronized T takeIdle(String key) {
+        Deque<T> sessions = idle.get(key);
+        if (sessions == null || sessions.isEmpty()) {
+            return null;
+        }
+        T value = sessions.pop();
+        idleOrder.removeFirstOccurrence(key);
+        if (sessions.isEmpty()) {
+            idle.remove(key);
+        }
+        return value;
+    }
+
+    private void offerIdle(String key, T value) {
+        T evicted = null;
+        synchronized (this) {
+            if (idleOrder.size() >= maxSize) {
+                evicted = evictOldest();
+            }
+            idle.computeIfAbsent(key, ignored -> new ArrayDeque<>()).push(value);
+            idleOrder.addLast(key);
+        }
+        if (evicted != null) {
+            evictions.incrementAndGet();
+            closeQuietly(evicted);
+        }
+    }
+
+    private T evictOldest() {
+        Iterator<String> keys = idleOrder.iterator();
+        if (!keys.hasNext()) {
+            return null;
+        }
+        String key = keys.next();
+        keys.remove();
+        Deque<T> sessions = idle.get(key);
+        T value = sessions.pollLast();
+        if (sessions.isEmpty()) {
+            idle.remove(key);
+        }
+        return value;
+    }
+
+    private static void closeQuietly(AutoCloseable value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            value.close();
+        } catch (Exception ignored) {
+            // closing a broken session is best-effort
+        }
+    }
+
+    record Lease<T>(String key, T value, boolean pooled) {}
+}
@@ -3,65 +3,220 @@ package work.lcod.kernel.tooling;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.proxy.ProxyExecutable;
+import work.lcod.kernel.flow.FlowErrorException;
 import work.lcod.kernel.runtime.ExecutionContext;
+import work.lcod.kernel.runtime.StateValues;
 import work.lcod.kernel.runtime.StepMeta;
 
 final class ScriptRuntime {
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final String LOG_CONTRACT_ID = "lcod://contract/tooling/log@1";
+    static final int SOURCE_CACHE_LIMIT = 512;
+    // Set while a script runs on a context; forks copy it, so nested scripts on worker threads see it too.
+    private static final String SCRIPT_DEPTH_ATTR = "__lcod_script_depth__";
+    // Snapshots the property descriptors and prototypes of globalThis, the objects it holds (console, process,
+    // built-in constructors and namespaces) and their prototypes/nested objects. The returned function removes
+    // globals a script added and answers whether everything else is untouched; a session whose built-ins were
+    // reassigned or patched is closed rather than handed to the next call.
+    private static final String RESET_GLOBALS_SOURCE = String.join("\n",
+        "(function(){",
+        "  const isObject = (v) => v !== null && (typeof v === 'object' || typeof v === 'function');",
+        "  const tracked = new Map();",
+        "  const track = (o) => {",
+        "    if (isObject(o) && !tracked.has(o)) {",
+        "      tracked.set(o, { proto: Object.getPrototypeOf(o), extensible: Object.isExtensible(o),",
+        "        descriptors: Object.getOwnPropertyDescriptors(o) });",
+        "    }",
+        "  };",
+        "  track(globalThis);",
+        "  for (const key of Reflect.ownKeys(globalThis)) {",
+        "    const value = Object.getOwnPropertyDescriptor(globalThis, key).value;",
+        "    if (!isObject(value)) continue;",
+        "    track(value);",
+        "    for (const inner of Reflect.ownKeys(value)) {",
+        "      const descriptor = Object.getOwnPropertyDescriptor(value, inner);",
+        "      if (descriptor && (inner === 'prototype' || (isObject(descriptor.value) && typeof descriptor.value !== 'function'))) {",
+        "        track(descriptor.value);",
+        "      }",
+        "    }",
+        "  }",
+        "  const same = (a, b) => Object.is(a.value, b.value) && a.get === b.get && a.set === b.set",
+        "    && a.writable === b.writable && a.enumerable === b.enumerable && a.configurable === b.configurable;",
+        "  const unchanged = (o, snapshot, allowAdded) => {",
+        "    if (Object.getPrototypeOf(o) !== snapshot.proto || Object.isExtensible(o) !== snapshot.extensible) return false;",
+        "    const keys = Reflect.ownKeys(o);",
+        "    let known = 0;",
+        "    for (const key of keys) {",
+        "      const before = snapshot.descriptors[key];",
+        "      if (before === undefined && !Object.prototype.hasOwnProperty.call(snapshot.descriptors, key)) {",
+        "        if (!allowAdded || !Reflect.deleteProperty(o, key)) return false;",
+        "        continue;",
+        "      }",
+        "      known++;",
+        "      if (!same(before, Object.getOwnPropertyDescriptor(o, key))) return false;",
+        "    }",
+        "    return known === Reflect.ownKeys(snapshot.descriptors).length;",
+        "  };",
+        "  return function(){",
+        "    for (const [o, snapshot] of tracked) {",
+        "      if (!unchanged(o, snapshot, o === globalThis)) return false;",
+        "    }",
+        "    return true;",
+        "  };",
+        "})()");
+
+    // Shared by every script context so parsed and compiled code is reused across calls.
+    private static final Engine ENGINE = Engine.newBuilder("js")
+        .allowExperimentalOptions(true)
+        .option("engine.WarnInterpreterOnly", "false")
+        .build();
+    private static final Map<String, Source> SOURCE_CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<String, Source>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Source> eldest) {
+                return size() > SOURCE_CACHE_LIMIT;
+            }
+        }
+    );
+
+    private static final AtomicLong SOURCE_HITS = new AtomicLong();
+    private static final AtomicLong SOURCE_MISSES = new AtomicLong();
+
+    private static final ScriptContextPool<ScriptSession> CONTEXT_POOL =
+        new ScriptContextPool<>(Integer.getInteger("lcod.script.pool.size", Math.max(2, Runtime.getRuntime().availableProcessors())));
+
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+    private static final long SLOW_SCRIPT_MS = Long.getLong("lcod.script.slowMs", 1000L);
+    // Generated or templated scripts hash differently on every call: keep only the most recently run ones.
+    private static final Map<String, ScriptTiming> TIMINGS = Collections.synchronizedMap(
+        new LinkedHashMap<String, ScriptTiming>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ScriptTiming> eldest) {
+                return size() > SOURCE_CACHE_LIMIT;
+            }
+        }
+    );
 
     private ScriptRuntime() {}
 
+    /**
+     * Pool and per-script counters, published through {@link ToolingPrimitives#scriptMetrics()}.
+     */
+    static Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("pool", poolStats());
+        metrics.put("sources", sourceCacheStats());
+        metrics.put("scripts", scriptTimings());
+        return metrics;
+    }
+
+    /**
+     * Size and hit/miss counters of the compiled source cache.
+     */
+    static Map<String, Object> sourceCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", SOURCE_CACHE.size());
+        stats.put("limit", SOURCE_CACHE_LIMIT);
+        stats.put("hits", SOURCE_HITS.get());
+        stats.put("misses", SOURCE_MISSES.get());
+        return stats;
+    }
+
+    /**
+     * The engine every script context is built on.
+     */
+    static Engine engine() {
+        return ENGINE;
+    }
+
+    /**
+     * Hit/miss/wait counters of the script context pool.
+     */
+    static Map<String, Object> poolStats() {
+        return CONTEXT_POOL.stats();
+    }
+
+    /**
+     * Call count, total/max duration and timeouts per script, keyed by the script's source hash. Only the
+     * {@link #SOURCE_CACHE_LIMIT} most recently run scripts are tracked.
+     */
+    static Map<String, Object> scriptTimings() {
+        Map<String, Object> timings = new LinkedHashMap<>();
+        synchronized (TIMINGS) {
+            TIMINGS.forEach((key, timing) -> timings.put(key, timing.snapshot()));
+        }
+        return timings;
+    }
+
     static Object run(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         String source = optionalString(input.get("source"));
         if (source == null || source.isBlank()) {
             throw new IllegalArgumentException("tooling/script requires non-empty source");
         }
 
-        long timeoutMs = readTimeout(input.get("timeoutMs"));
+        // Only an explicit timeoutMs arms the watchdog; scripts without one keep running unbounded.
+        long timeoutMs = input.get("timeoutMs") == null ? 0L : readTimeout(input.get("timeoutMs"));
         Map<String, Object> initialState = prepareInitialState(ctx, input.get("input"), input);
-        Map<String, Object> scopeState = deepClone(initialState);
+        Map<String, Object> scopeState = StateValues.snapshot(initialState);
         Map<String, Object> bindings = resolveBindings(initialState, asObject(input.get("bindings")));
         Map<String, Object> metaInput = asObject(input.get("meta"));
         Map<String, Object> config = asObject(input.get("config"));
 
-        Map<String, Object> scopeMeta = deepClone(metaInput);
+        Map<String, Object> scopeMeta = StateValues.snapshot(metaInput);
         registerStreams(ctx, scopeState, input.get("streams"));
         List<String> messages = new ArrayList<>();
 
-        try (Context polyglot = Context
-            .newBuilder("js")
-            .allowHostAccess(HostAccess.ALL)
-            .allowExperimentalOptions(true)
-            .allowAllAccess(true)
-            .option("engine.WarnInterpreterOnly", "false")
-            .option("js.ecmascript-version", "2023")
-            .build()) {
-
-            injectProcessGlobal(polyglot, ctx);
-            injectConsoleGlobal(polyglot, ctx, messages);
-            ToolsRegistry tools = compileTools(polyglot, input.get("tools"));
-            ImportsRegistry imports = buildImports(ctx, input.get("imports"), meta);
-            Value importsObject = buildImportsObject(polyglot, imports.view());
-            ApiBridge api = new ApiBridge(ctx, polyglot, config, messages, tools, imports, importsObject, meta);
-
-            Value scopeValue = MapBuilder.buildScope(polyglot, bindings, scopeState, scopeMeta, importsObject);
+        Object rawImports = input.get("imports");
+        Object rawTools = input.get("tools");
+        Object depth = ctx.getAttribute(SCRIPT_DEPTH_ATTR);
+        var lease = CONTEXT_POOL.acquire(sessionKey(rawImports, rawTools), () -> createSession(rawImports, rawTools), depth != null);
+        ctx.setAttribute(SCRIPT_DEPTH_ATTR, depth instanceof Integer outer ? outer + 1 : 1);
+        ScriptSession session = lease.value();
+        boolean reusable = false;
+        session.bind(ctx, messages, meta);
+        String scriptKey = sha256(source).substring(0, 12);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        long started = System.nanoTime();
+        ScheduledFuture<?> watchdog = timeoutMs > 0 ? WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            session.cancel();
+        }, timeoutMs, TimeUnit.MILLISECONDS) : null;
+        long deadline = timeoutMs > 0 ? started + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : 0L;
+        try (var cancelHook = ctx.cancellationToken().onCancel(session::cancel)) {
+            Context polyglot = session.context;
+            ApiBridge api = new ApiBridge(ctx, polyglot, config, messages, session.tools, session.imports, session.importsObject, meta);
+
+            Value scopeValue = MapBuilder.buildScope(polyglot, bindings, scopeState, scopeMeta, session.importsObject);
             Value apiValue = polyglot.asValue(api);
             Value function = compileFunction(polyglot, source);
-            Value rawResult = function.execute(scopeValue, apiValue);
-            Object result = awaitValue(polyglot, rawResult);
+            // A cancelled run stops the script and surfaces as a kernel cancellation rather than a script error.
+            Object result = ctx.interruptibly(() -> awaitValue(polyglot, function.execute(scopeValue, apiValue), deadline));
+            reusable = true;
 
             if (messages.isEmpty()) {
                 return result;
@@ -73,10 +228,104 @@ final class ScriptRuntime {
                 return copy;
             }
             return Map.of("result", result, "messages", new ArrayList<>(messages));
+        } catch (TimeoutException ex) {
+            timedOut.set(true);
+            throw timeoutError(timeoutMs, System.nanoTime() - started);
+        } catch (RuntimeException ex) {
+            // A cancelled context surfaces as a PolyglotException (or a closed-context error in host code).
+            if (timedOut.get() || (ex instanceof PolyglotException polyglotEx && polyglotEx.isCancelled())) {
+                throw timeoutError(timeoutMs, System.nanoTime() - started);
+            }
+            throw ex;
+        } finally {
+            if (watchdog != null && !watchdog.cancel(false)) {
+                // The watchdog fired (or is firing): the context is closed and must not go back to the pool.
+                timedOut.set(true);
+                reusable = false;
+            }
+            long elapsed = System.nanoTime() - started;
+            ctx.setAttribute(SCRIPT_DEPTH_ATTR, depth);
+            recordTiming(ctx, scriptKey, elapsed, timedOut.get());
+            CONTEXT_POOL.release(lease, session.reset(reusable));
         }
     }
 
-    private static void injectProcessGlobal(Context context, ExecutionContext ctx) {
+    private static FlowErrorException timeoutError(long timeoutMs, long elapsedNanos) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("timeoutMs", timeoutMs);
+        data.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        return new FlowErrorException("script_timeout", "tooling/script exceeded timeoutMs (" + timeoutMs + " ms)", data);
+    }
+
+    static void recordTiming(ExecutionContext ctx, String scriptKey, long elapsedNanos, boolean timedOut) {
+        TIMINGS.computeIfAbsent(scriptKey, ignored -> new ScriptTiming()).record(elapsedNanos, timedOut);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (timedOut || elapsedMs < SLOW_SCRIPT_MS) {
+            return;
+        }
+        try {
+            ctx.call(LOG_CONTRACT_ID, Map.of(
+                "level", "warn",
+                "message", "tooling/script " + scriptKey + " took " + elapsedMs + " ms"
+            ), null);
+        } catch (Exception ignored) {
+            // best-effort logging
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        var executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "lcod-script-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Most scripts finish well before their deadline; drop cancelled deadlines instead of keeping them queued.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    private static ScriptSession createSession(Object rawImports, Object rawTools) {
+        Context polyglot = Context
+            .newBuilder("js")
+            .engine(ENGINE)
+            .allowHostAccess(HostAccess.ALL)
+            .allowExperimentalOptions(true)
+            .allowAllAccess(true)
+            .option("js.ecmascript-version", "2023")
+            // Kernel maps and lists are proxies; give them the Object/Array prototypes scripts expect.
+            .option("js.foreign-object-prototype", "true")
+            .build();
+        try {
+            ScriptSession session = new ScriptSession(polyglot);
+            injectProcessGlobal(session);
+            injectConsoleGlobal(session);
+            session.tools = compileTools(polyglot, rawTools);
+            session.imports = buildImports(session, rawImports);
+            session.importsObject = buildImportsObject(polyglot, session.imports.view());
+            session.resetGlobals = polyglot.eval("js", RESET_GLOBALS_SOURCE);
+            return session;
+        } catch (RuntimeException ex) {
+            polyglot.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sessions are interchangeable when they were built from the same imports and tools.
+     */
+    private static String sessionKey(Object rawImports, Object rawTools) {
+        Map<String, Object> signature = new LinkedHashMap<>();
+        signature.put("imports", rawImports instanceof Map<?, ?> ? rawImports : null);
+        signature.put("tools", rawTools instanceof List<?> ? rawTools : null);
+        try {
+            return sha256(JSON.writeValueAsString(signature));
+        } catch (Exception ex) {
+            return sha256(String.valueOf(signature));
+        }
+    }
+
+    private static void injectProcessGlobal(ScriptSession session) {
+        Context context = session.context;
         Value bindings = context.getBindings("js");
         if (bindings.hasMember("process")) {
             return;
@@ -85,30 +334,30 @@ final class ScriptRuntime {
         Map<String, String> env = System.getenv();
         Value envValue = toJsValue(context, env);
         process.putMember("env", envValue);
-        ProxyExecutable cwdFn = args -> context.asValue(ctx.workingDirectory().toString());
+        ProxyExecutable cwdFn = args -> context.asValue(session.ctx.workingDirectory().toString());
         process.putMember("cwd", cwdFn);
         bindings.putMember("process", process);
     }
 
-    private static void injectConsoleGlobal(Context context, ExecutionContext ctx, List<String> messages) {
-        Value bindings = context.getBindings("js");
-        Value console = context.eval("js", "({})");
-        console.putMember("log", createConsoleFunction(ctx, messages, "info"));
-        console.putMember("info", createConsoleFunction(ctx, messages, "info"));
-        console.putMember("warn", createConsoleFunction(ctx, messages, "warn"));
-        console.putMember("error", createConsoleFunction(ctx, messages, "error"));
-        console.putMember("debug", createConsoleFunction(ctx, messages, "debug"));
-        console.putMember("trace", createConsoleFunction(ctx, messages, "debug"));
+    private static void injectConsoleGlobal(ScriptSession session) {
+        Value bindings = session.context.getBindings("js");
+        Value console = session.context.eval("js", "({})");
+        console.putMember("log", createConsoleFunction(session, "info"));
+        console.putMember("info", createConsoleFunction(session, "info"));
+        console.putMember("warn", createConsoleFunction(session, "warn"));
+        console.putMember("error", createConsoleFunction(session, "error"));
+        console.putMember("debug", createConsoleFunction(session, "debug"));
+        console.putMember("trace", createConsoleFunction(session, "debug"));
         bindings.putMember("console", console);
     }
 
-    private static ProxyExecutable createConsoleFunction(ExecutionContext ctx, List<String> messages, String level) {
+    private static ProxyExecutable createConsoleFunction(ScriptSession session, String level) {
         return args -> {
             String rendered = renderConsoleArgs(args);
             if (rendered != null && !rendered.isEmpty()) {
-                messages.add(rendered);
+                session.messages.add(rendered);
                 try {
-                    ctx.call(LOG_CONTRACT_ID, Map.of("level", level, "message", rendered), null);
+                    session.ctx.call(LOG_CONTRACT_ID, Map.of("level", level, "message", rendered), null);
                 } catch (Exception ignored) {
                     // best-effort logging
                 }
@@ -171,11 +420,11 @@ final class ScriptRuntime {
     private static Map<String, Object> prepareInitialState(ExecutionContext ctx, Object rawInput, Map<String, Object> payload) {
         Map<String, Object> attributeState = asObject(ctx.getAttribute("__lcod_state__"));
         if (!attributeState.isEmpty()) {
-            return deepClone(attributeState);
+            return StateValues.snapshot(attributeState);
         }
         Map<String, Object> state = asObject(rawInput);
         if (!state.isEmpty()) {
-            return deepClone(state);
+            return StateValues.snapshot(state);
         }
         Map<String, Object> fallback = new LinkedHashMap<>();
         for (var entry : payload.entrySet()) {
@@ -242,7 +491,7 @@ final class ScriptRuntime {
         return cursor;
     }
 
-    private static ImportsRegistry buildImports(ExecutionContext ctx, Object rawImports, StepMeta meta) {
+    private static ImportsRegistry buildImports(ScriptSession session, Object rawImports) {
         if (!(rawImports instanceof Map<?, ?> map)) {
             return ImportsRegistry.empty();
         }
@@ -251,7 +500,7 @@ final class ScriptRuntime {
             String alias = optionalString(entry.getKey());
             String target = optionalString(entry.getValue());
             if (alias == null || target == null) continue;
-            entries.put(alias, payload -> ctx.call(target, asObject(payload), meta));
+            entries.put(alias, payload -> session.ctx.call(target, asObject(payload), session.meta));
         }
         return new ImportsRegistry(entries);
     }
@@ -276,10 +525,49 @@ final class ScriptRuntime {
         String trimmed = source.trim();
         String normalized = trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
         String wrapped = "(function(scope, api){ const fn = (" + normalized + "); return fn(scope, api); })";
-        return context.eval("js", wrapped);
+        return context.eval(cachedSource(wrapped));
+    }
+
+    static Source cachedSource(String code) {
+        String key = sha256(code);
+        synchronized (SOURCE_CACHE) {
+            Source cached = SOURCE_CACHE.get(key);
+            if (cached != null) {
+                SOURCE_HITS.incrementAndGet();
+            } else {
+                SOURCE_MISSES.incrementAndGet();
+                cached = Source.newBuilder("js", code, "lcod-script-" + key.substring(0, 12) + ".js")
+                    .cached(true)
+                    .buildLiteral();
+                SOURCE_CACHE.put(key, cached);
+            }
+            return cached;
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not available", ex);
+        }
     }
 
     private static Object awaitValue(Context context, Value value) throws ExecutionException, InterruptedException {
+        try {
+            return awaitValue(context, value, 0L);
+        } catch (TimeoutException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Resolves {@code value}, waiting for it when it is a promise; a non-zero {@code deadlineNanos}
+     * ({@link System#nanoTime()} based) bounds the wait.
+     */
+    private static Object awaitValue(Context context, Value value, long deadlineNanos)
+        throws ExecutionException, InterruptedException, TimeoutException {
         if (value != null && value.canInvokeMember("then")) {
             CompletableFuture<Object> future = new CompletableFuture<>();
             ProxyExecutable resolve = args -> {
@@ -305,63 +593,20 @@ final class ScriptRuntime {
                 return null;
             };
             value.invokeMember("then", resolve, reject);
+            if (deadlineNanos != 0L) {
+                return future.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
             return future.get();
         }
         return valueToJava(value);
     }
 
     private static Object valueToJava(Value value) {
-        if (value == null || value.isNull()) {
-            return null;
-        }
-        if (value.isBoolean()) {
-            return value.asBoolean();
-        }
-        if (value.isNumber()) {
-            if (value.fitsInInt()) return value.asInt();
-            if (value.fitsInLong()) return value.asLong();
-            return value.asDouble();
-        }
-        if (value.isString()) {
-            return value.asString();
-        }
-        if (value.isHostObject()) {
-            Object host = value.asHostObject();
-            if (host instanceof Map<?, ?> map) {
-                Map<String, Object> copy = new LinkedHashMap<>();
-                map.forEach((k, v) -> copy.put(String.valueOf(k), v));
-                return copy;
-            }
-            if (host instanceof List<?> list) {
-                return new ArrayList<>(list);
-            }
-            return host;
-        }
-        if (value.hasArrayElements()) {
-            List<Object> list = new ArrayList<>();
-            long size = value.getArraySize();
-            for (long i = 0; i < size; i++) {
-                list.add(valueToJava(value.getArrayElement(i)));
-            }
-            return list;
-        }
-        if (value.hasMembers()) {
-            Map<String, Object> map = new LinkedHashMap<>();
-            for (String key : value.getMemberKeys()) {
-                map.put(key, valueToJava(value.getMember(key)));
-            }
-            return map;
-        }
-        return value.toString();
+        return ScriptValues.toHost(value);
     }
 
     private static Value toJsValue(Context context, Object value) {
-        try {
-            String serialized = JSON.writeValueAsString(value);
-            return context.eval("js", "JSON").getMember("parse").execute(serialized);
-        } catch (Exception ex) {
-            return context.asValue(value);
-        }
+        return context.asValue(ScriptValues.toGuest(value));
     }
 
     private static void registerStreams(ExecutionContext ctx, Map<String, Object> state, Object rawStreams) {
@@ -495,6 +740,90 @@ final class ScriptRuntime {
         }
     }
 
+    /**
+     * A JS context with its globals, tools and imports installed. The per-call execution context, message
+     * sink and step meta are bound on checkout so the same session can serve many script calls.
+     */
+    private static final class ScriptSession implements AutoCloseable {
+        private final Context context;
+        private ToolsRegistry tools;
+        private ImportsRegistry imports;
+        private Value importsObject;
+        private Value resetGlobals;
+        private ExecutionContext ctx;
+        private List<String> messages;
+        private StepMeta meta;
+
+        ScriptSession(Context context) {
+            this.context = context;
+        }
+
+        void bind(ExecutionContext ctx, List<String> messages, StepMeta meta) {
+            this.ctx = ctx;
+            this.messages = messages;
+            this.meta = meta;
+        }
+
+        /**
+         * Drops the per-call bindings and clears script-defined globals; returns whether the session can be reused,
+         * which is not the case once a script reassigned a global or patched a built-in, console or process.
+         */
+        boolean reset(boolean reusable) {
+            this.ctx = null;
+            this.messages = null;
+            this.meta = null;
+            if (!reusable) {
+                return false;
+            }
+            try {
+                return resetGlobals.execute().asBoolean();
+            } catch (RuntimeException ex) {
+                return false;
+            }
+        }
+
+        /**
+         * Stops whatever the context is running; the session cannot be reused afterwards.
+         */
+        void cancel() {
+            try {
+                context.close(true);
+            } catch (RuntimeException ignored) {
+                // the context may already be closing
+            }
+        }
+
+        @Override
+        public void close() {
+            context.close();
+        }
+    }
+
+    private static final class ScriptTiming {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        void record(long elapsedNanos, boolean timedOut) {
+            calls.incrementAndGet();
+            totalNanos.addAndGet(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+            if (timedOut) {
+                timeouts.incrementAndGet();
+            }
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("calls", calls.get());
+            snapshot.put("totalMs", TimeUnit.NANOSECONDS.toMillis(totalNanos.get()));
+            snapshot.put("maxMs", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+            snapshot.put("timeouts", timeouts.get());
+            return snapshot;
+        }
+    }
+
     private interface ImportFunction {
         Object invoke(Object payload) throws Exception;
     }
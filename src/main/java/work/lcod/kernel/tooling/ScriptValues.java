@@ -0,0 +1,192 @@
+package work.lcod.kernel.tooling;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
+import work.lcod.kernel.runtime.StateValues;
+
+/**
+ * Bridges kernel values and script values without serialising them. Maps and lists reach JS as proxies over
+ * copy-on-write views ({@link StateValues#share(Object)}), so handing a large payload to a script costs O(1)
+ * and script-side writes never leak into the kernel state; proxies coming back are unwrapped to their views.
+ */
+final class ScriptValues {
+    private ScriptValues() {}
+
+    static Object toGuest(Object value) {
+        if (value instanceof Map<?, ?> || value instanceof List<?>) {
+            return wrap(StateValues.share(value));
+        }
+        if (value instanceof byte[] bytes) {
+            // Matches the JSON encoding scripts used to receive for binary chunks.
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object wrap(Object shared) {
+        if (shared instanceof Map<?, ?> map) {
+            return new MapProxy((Map<String, Object>) map);
+        }
+        return new ListProxy((List<Object>) shared);
+    }
+
+    static Object toHost(Value value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (value.isBoolean()) {
+            return value.asBoolean();
+        }
+        if (value.isNumber()) {
+            if (value.fitsInInt()) return value.asInt();
+            if (value.fitsInLong()) return value.asLong();
+            return value.asDouble();
+        }
+        if (value.isString()) {
+            return value.asString();
+        }
+        if (value.isProxyObject()) {
+            Object proxy = value.asProxyObject();
+            if (proxy instanceof MapProxy map) {
+                return map.values;
+            }
+            if (proxy instanceof ListProxy list) {
+                return list.values;
+            }
+        }
+        if (value.isHostObject()) {
+            Object host = value.asHostObject();
+            if (host instanceof Map<?, ?> map) {
+                Map<String, Object> copy = new LinkedHashMap<>();
+                map.forEach((k, v) -> copy.put(String.valueOf(k), v));
+                return copy;
+            }
+            if (host instanceof List<?> list) {
+                return new ArrayList<>(list);
+            }
+            return host;
+        }
+        if (value.hasArrayElements()) {
+            List<Object> list = new ArrayList<>();
+            long size = value.getArraySize();
+            for (long i = 0; i < size; i++) {
+                list.add(toHost(value.getArrayElement(i)));
+            }
+            return list;
+        }
+        if (value.hasMembers()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (String key : value.getMemberKeys()) {
+                map.put(key, toHost(value.getMember(key)));
+            }
+            return map;
+        }
+        return value.toString();
+    }
+
+    private static final class MapProxy implements ProxyObject {
+        private final Map<String, Object> values;
+        // Keeps nested proxies stable so `scope.state.x === scope.state.x` holds in scripts.
+        private final Map<String, Object> children = new HashMap<>();
+
+        MapProxy(Map<String, Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object getMember(String key) {
+            Object value = values.get(key);
+            if (!(value instanceof Map<?, ?>) && !(value instanceof List<?>)) {
+                return toGuest(value);
+            }
+            Object cached = children.get(key);
+            if (cached instanceof MapProxy map && map.values == value || cached instanceof ListProxy list && list.values == value) {
+                return cached;
+            }
+            // Values read through the view are already copy-on-write, wrap them as they are.
+            Object proxy = wrap(value);
+            children.put(key, proxy);
+            return proxy;
+        }
+
+        @Override
+        public Object getMemberKeys() {
+            return values.keySet().toArray();
+        }
+
+        @Override
+        public boolean hasMember(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public void putMember(String key, Value value) {
+            values.put(key, toHost(value));
+        }
+
+        @Override
+        public boolean removeMember(String key) {
+            if (!values.containsKey(key)) {
+                return false;
+            }
+            values.remove(key);
+            return true;
+        }
+    }
+
+    private static final class ListProxy implements ProxyArray {
+        private final List<Object> values;
+
+        ListProxy(List<Object> values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object get(long index) {
+            checkIndex(index, values.size());
+            Object value = values.get((int) index);
+            if (value instanceof Map<?, ?> || value instanceof List<?>) {
+                return wrap(value);
+            }
+            return toGuest(value);
+        }
+
+        @Override
+        public void set(long index, Value value) {
+            // Writing one past the end appends, which is how Array.prototype.push reaches the list.
+            checkIndex(index, values.size() + 1L);
+            Object converted = toHost(value);
+            if (index == values.size()) {
+                values.add(converted);
+            } else {
+                values.set((int) index, converted);
+            }
+        }
+
+        @Override
+        public boolean remove(long index) {
+            checkIndex(index, values.size());
+            values.remove((int) index);
+            return true;
+        }
+
+        @Override
+        public long getSize() {
+            return values.size();
+        }
+
+        private static void checkIndex(long index, long bound) {
+            if (index < 0 || index >= bound) {
+                throw new ArrayIndexOutOfBoundsException("Index out of bounds: " + index);
+            }
+        }
+    }
+}
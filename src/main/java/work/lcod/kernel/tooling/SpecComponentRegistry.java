@@ -6,10 +6,10 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import work.lcod.kernel.runtime.ComponentMetadata;
 import work.lcod.kernel.runtime.ComponentMetadataLoader;
 import work.lcod.kernel.runtime.ComposeLoader;
+import work.lcod.kernel.runtime.ComposePlan;
 import work.lcod.kernel.runtime.ComposeRunner;
 import work.lcod.kernel.runtime.ExecutionContext;
 import work.lcod.kernel.runtime.Registry;
@@ -74,8 +74,6 @@ public final class SpecComponentRegistry {
         new ComponentDef("lcod://tooling/resolver/internal/load-sources@0.1.0", "packages/resolver/components/internal/load_sources/compose.yaml")
     );
 
-    private static final Map<Path, List<Map<String, Object>>> COMPOSE_CACHE = new ConcurrentHashMap<>();
-
     public static void register(Registry registry) {
         var specRoot = SpecPaths.locateSpecRoot().orElse(null);
         if (specRoot == null) {
@@ -91,7 +89,9 @@ public final class SpecComponentRegistry {
             if (!Files.isRegularFile(composePath)) {
                 continue;
             }
-            ComponentMetadata metadata = ComponentMetadataLoader.load(composePath.getParent().resolve("lcp.toml")).orElse(null);
+            Path manifestPath = composePath.getParent().resolve("lcp.toml");
+            ComponentMetadata metadata = ComponentMetadataLoader.fingerprinted(
+                ComponentMetadataLoader.load(manifestPath).orElse(null), composePath, manifestPath);
             registry.register(
                 def.id(),
                 (ctx, input, meta) -> runSpecCompose(ctx, composePath, input, specRoot),
@@ -102,11 +102,11 @@ public final class SpecComponentRegistry {
     }
 
     private static Object runSpecCompose(ExecutionContext ctx, Path composePath, Map<String, Object> input, Path specRoot) {
-        List<Map<String, Object>> steps = COMPOSE_CACHE.computeIfAbsent(composePath, ComposeLoader::loadFromLocalFile);
+        ComposePlan plan = ComposeLoader.loadPlanFromLocalFile(composePath);
         Map<String, Object> initial = input == null ? new LinkedHashMap<>() : new LinkedHashMap<>(input);
         initial.putIfAbsent("specRoot", specRoot.toString());
         try {
-            return ComposeRunner.runSteps(ctx, steps, initial, Map.of());
+            return ComposeRunner.runSteps(ctx, plan, initial, Map.of());
         } catch (Exception ex) {
             String reason = ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage();
             throw new IllegalStateException("Failed to execute spec component from " + composePath + ": " + reason, ex);
@@ -8,7 +8,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
@@ -25,13 +24,14 @@ import java.util.Set;
 import java.util.TreeMap;
 import org.tomlj.Toml;
 import org.tomlj.TomlParseResult;
-import org.tomlj.TomlArray;
 import org.tomlj.TomlTable;
 import work.lcod.kernel.core.stream.InMemoryStreamHandle;
 import work.lcod.kernel.runtime.ComposeLoader;
+import work.lcod.kernel.runtime.ComposePlan;
 import work.lcod.kernel.runtime.ComposeRunner;
 import work.lcod.kernel.runtime.ExecutionContext;
 import work.lcod.kernel.runtime.Registry;
+import work.lcod.kernel.runtime.ResultCache;
 import work.lcod.kernel.runtime.ComponentMetadata;
 import work.lcod.kernel.runtime.StepMeta;
 
@@ -44,7 +44,6 @@ public final class ToolingPrimitives {
     private static final String LOG_CONTRACT_ID = "lcod://contract/tooling/log@1";
     private static final String LOG_CONTEXT_ID = "lcod://tooling/log.context@1";
     private static final String LOG_CAPTURE_ATTR = "__lcod_tooling_log_capture__";
-    private static final String LOG_CAPTURE_OVERFLOW_ATTR = "__lcod_tooling_log_capture_overflow__";
     private static final int LOG_CAPTURE_LIMIT = 1024;
     private static final String LOG_SCOPE_ATTR = "__lcod_tooling_log_scope__";
 
@@ -90,6 +89,15 @@ public final class ToolingPrimitives {
         return registry;
     }
 
+    /**
+     * Counters of the tooling/script runtime: {@code pool} (context pool hits, misses, overflows, evictions and
+     * wait time), {@code sources} (compiled source cache) and {@code scripts} (call count and durations per script
+     * source hash).
+     */
+    public static Map<String, Object> scriptMetrics() {
+        return ScriptRuntime.metrics();
+    }
+
     private static Object testChecker(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
         if (input == null) {
             throw new IllegalArgumentException("tooling/test_checker requires an input object");
@@ -681,9 +689,7 @@ public final class ToolingPrimitives {
     }
 
     private static Object resolverResolveDependencies(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
-        Path projectRoot = optionalString(input != null ? input.get("projectPath") : null) != null
-            ? Paths.get(optionalString(input.get("projectPath"))).toAbsolutePath().normalize()
-            : Paths.get(".").toAbsolutePath().normalize();
+        Path projectRoot = resolverProjectRoot(ctx, input);
 
         Map<String, Object> normalizedConfig = asObject(input != null ? input.get("normalizedConfig") : null);
         Map<String, Object> rawConfig = asObject(input != null ? input.get("config") : null);
@@ -712,15 +718,29 @@ public final class ToolingPrimitives {
         }
 
         List<String> rootRequires = parseRequiresFromDescriptor(rootDescriptor);
-        Map<String, DescriptorEntry> descriptorCache = new LinkedHashMap<>();
+        Map<String, Object> resolvedSources = sources;
+        // Same location as lcod://tooling/resolver/cache-dir@1 unless the caller passes its own.
+        String rawCacheDir = optionalString(input != null ? input.get("cacheDir") : null);
+        Path cacheDir = rawCacheDir != null
+            ? projectRoot.resolve(rawCacheDir).normalize()
+            : projectRoot.resolve(".lcod").resolve("cache");
+        ResolverDescriptors descriptors = ResolverDescriptors.open(cacheDir);
+        // Read, parse and hash the whole graph concurrently; the walk below then only hits the cache.
+        descriptors.prefetch(ctx, rootRequires, depId -> {
+            if (shouldSkipDependency(depId) || !(resolvedSources.get(depId) instanceof Map<?, ?> spec)) {
+                return null;
+            }
+            return resolveSpecPath(depId, spec, projectRoot);
+        });
         LinkedHashSet<String> visiting = new LinkedHashSet<>();
         List<Object> dependencyNodes = new ArrayList<>();
         for (String depId : rootRequires) {
             if (shouldSkipDependency(depId)) {
                 continue;
             }
-            dependencyNodes.add(resolveDependencyNode(depId, projectRoot, sources, visiting, descriptorCache));
+            dependencyNodes.add(resolveDependencyNode(depId, projectRoot, sources, descriptors, visiting));
         }
+        descriptors.save();
 
         List<String> warnings = collectWarningBuckets(input);
         Map<String, Object> rootNode = new LinkedHashMap<>();
@@ -729,7 +749,7 @@ public final class ToolingPrimitives {
         rootNode.put("resolved", rootId);
         rootNode.put("source", Map.of("type", "path", "path", projectRoot.toString()));
         rootNode.put("dependencies", dependencyNodes);
-        rootNode.put("integrity", rootDescriptorText == null ? null : computeIntegrity(rootDescriptorText));
+        rootNode.put("integrity", rootDescriptorText == null ? null : ResolverDescriptors.integrity(rootDescriptorText));
 
         Map<String, Object> resolverResult = new LinkedHashMap<>();
         resolverResult.put("root", rootNode);
@@ -792,8 +812,8 @@ public final class ToolingPrimitives {
         String depId,
         Path projectRoot,
         Map<String, Object> sources,
-        LinkedHashSet<String> visiting,
-        Map<String, DescriptorEntry> cache
+        ResolverDescriptors descriptors,
+        LinkedHashSet<String> visiting
     ) throws Exception {
         if (!visiting.add(depId)) {
             throw new IllegalArgumentException("dependency cycle detected for " + depId);
@@ -803,13 +823,13 @@ public final class ToolingPrimitives {
             throw new IllegalArgumentException("no source specified for dependency " + depId);
         }
         Path descriptorDir = resolveSpecPath(depId, spec, projectRoot);
-        DescriptorEntry descriptor = readDescriptorEntry(descriptorDir, cache);
+        ResolverDescriptors.Descriptor descriptor = descriptors.read(descriptorDir);
         List<Object> childNodes = new ArrayList<>();
         for (String child : descriptor.requires) {
             if (shouldSkipDependency(child)) {
                 continue;
             }
-            childNodes.add(resolveDependencyNode(child, projectRoot, sources, visiting, cache));
+            childNodes.add(resolveDependencyNode(child, projectRoot, sources, descriptors, visiting));
         }
         visiting.remove(depId);
 
@@ -819,7 +839,7 @@ public final class ToolingPrimitives {
         node.put("resolved", depId);
         node.put("source", Map.of("type", "registry", "reference", depId));
         node.put("dependencies", childNodes);
-        node.put("integrity", computeIntegrity(descriptor.text));
+        node.put("integrity", descriptor.integrity);
         return node;
     }
 
@@ -839,33 +859,6 @@ public final class ToolingPrimitives {
         return projectRoot.resolve(rel).normalize();
     }
 
-    private static DescriptorEntry readDescriptorEntry(Path componentDir, Map<String, DescriptorEntry> cache) throws IOException {
-        Path manifest = componentDir.resolve("lcp.toml");
-        Path canonical = manifest.toAbsolutePath().normalize();
-        String cacheKey = canonical.toString();
-        if (cache.containsKey(cacheKey)) {
-            return cache.get(cacheKey);
-        }
-        String text = Files.readString(canonical, StandardCharsets.UTF_8);
-        TomlParseResult result = Toml.parse(text);
-        if (result.hasErrors()) {
-            throw new IllegalArgumentException("unable to parse descriptor at " + canonical);
-        }
-        List<String> requires = new ArrayList<>();
-        TomlArray depsArray = result.getArray("deps.requires");
-        if (depsArray != null) {
-            for (int i = 0; i < depsArray.size(); i++) {
-                String value = depsArray.getString(i);
-                if (value != null && !value.isBlank()) {
-                    requires.add(value);
-                }
-            }
-        }
-        DescriptorEntry entry = new DescriptorEntry(requires, text);
-        cache.put(cacheKey, entry);
-        return entry;
-    }
-
     private static List<String> parseRequiresFromDescriptor(Map<String, Object> descriptor) {
         Object depsRaw = descriptor.get("deps");
         if (!(depsRaw instanceof Map<?, ?> depsMap)) {
@@ -884,16 +877,6 @@ public final class ToolingPrimitives {
         return requires;
     }
 
-    private static String computeIntegrity(String text) throws Exception {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
-        StringBuilder builder = new StringBuilder(hash.length * 2);
-        for (byte b : hash) {
-            builder.append(String.format("%02x", b));
-        }
-        return "sha256-" + builder;
-    }
-
     private static Object objectEntries(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) {
         Map<String, Object> source = asObject(input != null ? input.get("value") : null);
         List<List<Object>> entries = new ArrayList<>();
@@ -1164,31 +1147,25 @@ public final class ToolingPrimitives {
     }
 
     private static Object registryScope(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
-        Map<String, String> originalBindings = ctx.registry().bindings();
         Map<String, String> overrides = sanitizeBindings(input == null ? null : input.get("bindings"));
-        boolean adjustedBindings = !overrides.isEmpty();
-        if (adjustedBindings) {
-            Map<String, String> merged = new LinkedHashMap<>(originalBindings);
-            merged.putAll(overrides);
-            ctx.registry().setBindings(merged);
+        // Bindings and inline components live in an overlay visible only to this context's sub-tree,
+        // so concurrent runs sharing the registry never observe them. Anything the children register
+        // (resolver helpers, workspace components) still goes to the outer registry and outlives the scope.
+        Registry scoped = ctx.registry().overlay();
+        if (!overrides.isEmpty()) {
+            scoped.setBindings(overrides);
+        }
+        registerInlineComponents(scoped, input == null ? null : input.get("components"));
+        scoped.forwardRegistrations();
+        List<Map<String, Object>> children = meta == null ? List.of() : meta.slots().getOrDefault("children", List.of());
+        if (children.isEmpty()) {
+            return Map.of();
         }
-        List<String> registeredComponents = registerInlineComponents(ctx, input == null ? null : input.get("components"));
-        try {
-            List<Map<String, Object>> children = meta == null ? List.of() : meta.slots().getOrDefault("children", List.of());
-            if (children.isEmpty()) {
-                return Map.of();
-            }
+        return ctx.withRegistry(scoped, () -> {
             Map<String, Object> localState = new LinkedHashMap<>();
             Map<String, Object> result = ctx.runChildren(children, localState, Map.of());
             return result == null ? Map.of() : result;
-        } finally {
-            if (adjustedBindings) {
-                ctx.registry().setBindings(originalBindings);
-            }
-            for (String componentId : registeredComponents) {
-                ctx.registry().unregister(componentId);
-            }
-        }
+        });
     }
 
     private static Map<String, String> sanitizeBindings(Object raw) {
@@ -1206,29 +1183,27 @@ public final class ToolingPrimitives {
         return sanitized;
     }
 
-    private static List<String> registerInlineComponents(ExecutionContext ctx, Object rawComponents) {
+    private static void registerInlineComponents(Registry target, Object rawComponents) {
         if (!(rawComponents instanceof List<?> list) || list.isEmpty()) {
-            return List.of();
+            return;
         }
-        List<String> registeredIds = new ArrayList<>();
         for (Object entryObj : list) {
             if (!(entryObj instanceof Map<?, ?> component)) continue;
             String id = optionalString(component.get("id"));
-            if (id == null || ctx.registry().get(id) != null) {
+            if (id == null || target.get(id) != null) {
                 continue;
             }
             ComponentMetadata inlineMetadata = buildInlineMetadata(component);
             if ("lcod://impl/testing/log-capture@1".equals(id)) {
-                ctx.registry().register(id, (innerCtx, payload, meta) -> {
+                target.register(id, (innerCtx, payload, meta) -> {
                     Map<String, Object> entry = cloneObject(payload);
                     appendCapturedLog(innerCtx, entry);
                     return entry;
                 }, null, inlineMetadata);
-                registeredIds.add(id);
                 continue;
             }
             if ("lcod://impl/testing/log-captured@1".equals(id)) {
-                ctx.registry().register(id, (innerCtx, payload, meta) -> {
+                target.register(id, (innerCtx, payload, meta) -> {
                     List<Map<String, Object>> captured = getCapturedLogs(innerCtx);
                     List<Map<String, Object>> copy = new ArrayList<>();
                     for (Map<String, Object> log : captured) {
@@ -1236,7 +1211,6 @@ public final class ToolingPrimitives {
                     }
                     return copy;
                 }, null, inlineMetadata);
-                registeredIds.add(id);
                 continue;
             }
             Object compose = component.get("compose");
@@ -1249,24 +1223,23 @@ public final class ToolingPrimitives {
                     storedSteps.add(cloneObject(map));
                 }
             }
-            ctx.registry().register(id, (innerCtx, payload, meta) -> {
+            ComposePlan storedPlan = ComposePlan.compile(storedSteps);
+            target.register(id, (innerCtx, payload, meta) -> {
                 Map<String, Object> seed = cloneObject(payload);
-                return ComposeRunner.runSteps(innerCtx, storedSteps, seed, Map.of());
+                return ComposeRunner.runSteps(innerCtx, storedPlan, seed, Map.of());
             }, null, inlineMetadata);
-            registeredIds.add(id);
         }
-
-        return registeredIds;
     }
 
     private static ComponentMetadata buildInlineMetadata(Map<?, ?> component) {
         List<String> inputs = extractMetadataKeys(component.get("inputs"));
         List<String> outputs = extractMetadataKeys(component.get("outputs"));
         List<String> slots = extractMetadataKeys(component.get("slots"));
-        if (inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty()) {
+        boolean pure = Boolean.TRUE.equals(component.get("pure"));
+        if (inputs.isEmpty() && outputs.isEmpty() && slots.isEmpty() && !pure) {
             return null;
         }
-        return new ComponentMetadata(inputs, outputs, slots);
+        return new ComponentMetadata(inputs, outputs, slots, pure, pure ? ResultCache.fingerprint(component) : null);
     }
 
     private static List<String> extractMetadataKeys(Object raw) {
@@ -1361,57 +1334,63 @@ public final class ToolingPrimitives {
         return tags;
     }
 
-    @SuppressWarnings("unchecked")
     private static void appendCapturedLog(ExecutionContext ctx, Map<String, Object> entry) {
-        List<Map<String, Object>> logs = (List<Map<String, Object>>) ctx.getAttribute(LOG_CAPTURE_ATTR);
-        if (logs == null) {
-            logs = new ArrayList<>();
-            ctx.setAttribute(LOG_CAPTURE_ATTR, logs);
-        }
-        if (logs.size() >= LOG_CAPTURE_LIMIT) {
-            Boolean overflowed = (Boolean) ctx.getAttribute(LOG_CAPTURE_OVERFLOW_ATTR);
-            if (!Boolean.TRUE.equals(overflowed)) {
-                Map<String, Object> notice = new LinkedHashMap<>();
-                notice.put("level", "warn");
-                notice.put("message", "Spec log buffer truncated");
-                notice.put("tags", Map.of(
-                    "component", "kernel",
-                    "scope", "registry-scope",
-                    "reason", "log-overflow"
-                ));
-                logs.add(notice);
-                ctx.setAttribute(LOG_CAPTURE_OVERFLOW_ATTR, Boolean.TRUE);
+        // Shared by the whole fork tree so logs written by parallel branches reach the parent's capture.
+        LogCapture capture = ctx.sharedAttribute(LOG_CAPTURE_ATTR, LogCapture::new);
+        synchronized (capture) {
+            if (capture.logs.size() >= LOG_CAPTURE_LIMIT) {
+                if (!capture.overflowed) {
+                    Map<String, Object> notice = new LinkedHashMap<>();
+                    notice.put("level", "warn");
+                    notice.put("message", "Spec log buffer truncated");
+                    notice.put("tags", Map.of(
+                        "component", "kernel",
+                        "scope", "registry-scope",
+                        "reason", "log-overflow"
+                    ));
+                    capture.logs.add(notice);
+                    capture.overflowed = true;
+                }
+                return;
             }
-            return;
+            capture.logs.add(cloneObject(entry));
         }
-        logs.add(cloneObject(entry));
     }
 
-    @SuppressWarnings("unchecked")
     private static List<Map<String, Object>> getCapturedLogs(ExecutionContext ctx) {
-        List<Map<String, Object>> logs = (List<Map<String, Object>>) ctx.getAttribute(LOG_CAPTURE_ATTR);
-        return logs == null ? List.of() : logs;
+        if (!(ctx.getSharedAttribute(LOG_CAPTURE_ATTR) instanceof LogCapture capture)) {
+            return List.of();
+        }
+        synchronized (capture) {
+            return new ArrayList<>(capture.logs);
+        }
+    }
+
+    private static final class LogCapture {
+        private final List<Map<String, Object>> logs = new ArrayList<>();
+        private boolean overflowed;
     }
 
     @SuppressWarnings("unchecked")
     private static void pushLogScope(ExecutionContext ctx, Map<String, Object> tags) {
-        Deque<Map<String, Object>> stack = (Deque<Map<String, Object>>) ctx.getAttribute(LOG_SCOPE_ATTR);
-        if (stack == null) {
-            stack = new ArrayDeque<>();
-            ctx.setAttribute(LOG_SCOPE_ATTR, stack);
-        }
+        // The scope stack is replaced rather than mutated so forked contexts keep their own view of it.
+        Deque<Map<String, Object>> current = (Deque<Map<String, Object>>) ctx.getAttribute(LOG_SCOPE_ATTR);
+        Deque<Map<String, Object>> stack = current == null ? new ArrayDeque<>() : new ArrayDeque<>(current);
         if (tags == null) {
             stack.push(Map.of());
         } else {
             stack.push(tags);
         }
+        ctx.setAttribute(LOG_SCOPE_ATTR, stack);
     }
 
     @SuppressWarnings("unchecked")
     private static void popLogScope(ExecutionContext ctx) {
-        Deque<Map<String, Object>> stack = (Deque<Map<String, Object>>) ctx.getAttribute(LOG_SCOPE_ATTR);
-        if (stack != null && !stack.isEmpty()) {
+        Deque<Map<String, Object>> current = (Deque<Map<String, Object>>) ctx.getAttribute(LOG_SCOPE_ATTR);
+        if (current != null && !current.isEmpty()) {
+            Deque<Map<String, Object>> stack = new ArrayDeque<>(current);
             stack.pop();
+            ctx.setAttribute(LOG_SCOPE_ATTR, stack);
         }
     }
 
@@ -1488,10 +1467,10 @@ public final class ToolingPrimitives {
             }
             List<String> declaredOutputs = extractDeclaredOutputs(component, composePath);
             final List<String> allowedOutputs = declaredOutputs.isEmpty() ? null : declaredOutputs;
-            final List<Map<String, Object>> componentSteps = steps;
+            final ComposePlan componentPlan = ComposePlan.compile(steps);
             registry.register(canonicalId, (childCtx, childInput, childMeta) -> {
                 Map<String, Object> initial = childInput == null ? new LinkedHashMap<>() : new LinkedHashMap<>(childInput);
-                return ComposeRunner.runSteps(childCtx, componentSteps, initial, Map.of());
+                return ComposeRunner.runSteps(childCtx, componentPlan, initial, Map.of());
             }, allowedOutputs);
             count += 1;
         }
@@ -1502,18 +1481,23 @@ public final class ToolingPrimitives {
     }
 
     private static Object resolverCacheDir(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) throws Exception {
-        String rawProject = input != null && input.get("projectPath") instanceof String str && !str.isBlank()
-            ? str
-            : ctx.workingDirectory().toString();
-        Path projectRoot = Paths.get(rawProject);
-        if (!projectRoot.isAbsolute()) {
-            projectRoot = ctx.workingDirectory().resolve(projectRoot).normalize();
-        }
-        Path cacheDir = projectRoot.resolve(".lcod").resolve("cache");
+        Path cacheDir = resolverProjectRoot(ctx, input).resolve(".lcod").resolve("cache");
         Files.createDirectories(cacheDir);
         return Map.of("path", cacheDir.toString());
     }
 
+    /**
+     * The resolver's project root: {@code projectPath} when given, resolved against the run's working directory
+     * (not the JVM's, which is the server's under the daemon or HTTP modes), else that working directory.
+     */
+    private static Path resolverProjectRoot(ExecutionContext ctx, Map<String, Object> input) {
+        String rawProject = input != null && input.get("projectPath") instanceof String str && !str.isBlank()
+            ? str
+            : null;
+        Path workingDirectory = ctx.workingDirectory().toAbsolutePath();
+        return (rawProject == null ? workingDirectory : workingDirectory.resolve(rawProject)).normalize();
+    }
+
     private static Object tomlStringify(ExecutionContext ctx, Map<String, Object> input, StepMeta meta) {
         Object rawValue = input != null ? input.get("value") : null;
         if (!(rawValue instanceof Map<?, ?> map)) {
@@ -1621,16 +1605,6 @@ public final class ToolingPrimitives {
         return loadManifestOutputs(composePath);
     }
 
-    private static final class DescriptorEntry {
-        final List<String> requires;
-        final String text;
-
-        DescriptorEntry(List<String> requires, String text) {
-            this.requires = requires;
-            this.text = text;
-        }
-    }
-
     private static List<String> loadManifestOutputs(Path composePath) {
         if (composePath == null) {
             return Collections.emptyList();
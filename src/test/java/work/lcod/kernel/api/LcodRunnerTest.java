@@ -3,10 +3,26 @@ package work.lcod.kernel.api;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class LcodRunnerTest {
+    // Runs write parsed composes and results under their cache directory: keep them out of the source tree.
+    @TempDir
+    Path cacheDirectory;
+
     @Test
     void runsLocalComposeFile() {
         var composePath = Path.of("src", "test", "resources", "composes", "echo.yaml").toAbsolutePath();
@@ -14,7 +30,7 @@ class LcodRunnerTest {
             .composeTarget(ComposeTarget.forLocal(composePath))
             .workingDirectory(composePath.getParent())
             .lockFile(composePath.getParent().resolve("lcp.lock"))
-            .cacheDirectory(composePath.getParent().resolve(".lcod/cache"))
+            .cacheDirectory(cacheDirectory)
             .logLevel(LogLevel.INFO)
             .build();
 
@@ -24,4 +40,96 @@ class LcodRunnerTest {
         var echoed = ((java.util.Map<?, ?>) result.metadata().get("result")).get("echoed");
         assertEquals(123, echoed);
     }
+
+    @Test
+    void timesOutLongRunningCompose() {
+        var composePath = Path.of("src", "test", "resources", "composes", "spin.yaml").toAbsolutePath();
+        var config = LcodRunConfiguration.builder()
+            .composeTarget(ComposeTarget.forLocal(composePath))
+            .workingDirectory(composePath.getParent())
+            .lockFile(composePath.getParent().resolve("lcp.lock"))
+            .cacheDirectory(cacheDirectory)
+            .timeout(Optional.of(Duration.ofMillis(200)))
+            .build();
+
+        var result = new LcodRunner().run(config);
+        assertEquals(RunResult.Status.TIMEOUT, result.status());
+        assertEquals(200L, result.metadata().get("timeoutMs"));
+        assertTrue(result.finishedAt().isBefore(result.startedAt().plusSeconds(10)));
+    }
+
+    @Test
+    void runAsyncCompletesAndCancelsRuns() throws Exception {
+        var echoPath = Path.of("src", "test", "resources", "composes", "echo.yaml").toAbsolutePath();
+        var runner = new LcodRunner();
+        var result = runner.runAsync(localConfig(echoPath)).get(30, TimeUnit.SECONDS);
+        assertEquals(RunResult.Status.SUCCESS, result.status());
+
+        var finished = new CountDownLatch(1);
+        var spinPath = Path.of("src", "test", "resources", "composes", "spin.yaml").toAbsolutePath();
+        var spinning = runner.runAsync(localConfig(spinPath), task -> new Thread(() -> {
+            task.run();
+            finished.countDown();
+        }).start());
+        Thread.sleep(200);
+        spinning.cancel(true);
+        assertTrue(spinning.isCancelled());
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void runBatchDeliversResultsInInputOrder() {
+        var composePath = Path.of("src", "test", "resources", "composes", "echo.yaml").toAbsolutePath();
+        var indexes = new ArrayList<Object>();
+        var inputs = IntStream.range(0, 20).mapToObj(i -> i % 2 == 0 ? Map.of("n", i) : "{\"n\": " + i + "}");
+
+        var stats = new LcodRunner().runBatch(localConfig(composePath), inputs, BatchOptions.defaults().withWorkers(4), result -> {
+            assertEquals(RunResult.Status.SUCCESS, result.status());
+            indexes.add(result.metadata().get("batchIndex"));
+        });
+
+        assertEquals(IntStream.range(0, 20).boxed().toList(), indexes);
+        assertEquals(20, stats.runs());
+        assertEquals(20, stats.succeeded());
+        assertTrue(stats.throughputPerSecond() > 0);
+    }
+
+    @Test
+    void httpServerRunsComposesUnderItsRoot() throws Exception {
+        var root = Path.of("src", "test", "resources", "composes").toAbsolutePath();
+        try (var server = LcodHttpServer.builder()
+            .composeRoot(root)
+            .cacheDirectory(cacheDirectory)
+            .maxConcurrentRuns(2)
+            .build()
+            .start()) {
+            var client = HttpClient.newHttpClient();
+            var base = "http://127.0.0.1:" + server.address().getPort();
+
+            var ok = client.send(HttpRequest.newBuilder(URI.create(base + "/run"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"compose\": \"echo.yaml\", \"input\": {}}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, ok.statusCode());
+            assertTrue(ok.body().contains("\"echoed\":123"));
+
+            var escaping = client.send(HttpRequest.newBuilder(URI.create(base + "/run"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"compose\": \"../echo.yaml\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, escaping.statusCode());
+
+            var timedOut = client.send(HttpRequest.newBuilder(URI.create(base + "/run"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"compose\": \"spin.yaml\", \"timeoutMs\": 200}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(504, timedOut.statusCode());
+        }
+    }
+
+    private LcodRunConfiguration localConfig(Path composePath) {
+        return LcodRunConfiguration.builder()
+            .composeTarget(ComposeTarget.forLocal(composePath))
+            .workingDirectory(composePath.getParent())
+            .lockFile(composePath.getParent().resolve("lcp.lock"))
+            .cacheDirectory(cacheDirectory)
+            .build();
+    }
 }
@@ -0,0 +1,118 @@
+package work.lcod.kernel.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class CatalogueIndexTest {
+    private static final String CATALOGUE = """
+        {"id":"lcod://demo/a@1","compose":"a/compose.yaml"}
+        not json
+        {"id":"lcod://demo/b@1","compose":"b/compose.yaml"}
+
+        {"id":"lcod://demo/a@1","compose":"shadowed/compose.yaml"}
+        """;
+
+    @Test
+    void roundTripsThroughTheSidecar(@TempDir Path dir) throws Exception {
+        Path catalogue = write(dir.resolve("catalogue.jsonl"), CATALOGUE);
+
+        var built = CatalogueIndex.open(catalogue);
+        assertEquals("b/compose.yaml", built.get("lcod://demo/b@1").get("compose"));
+        assertNull(built.get("lcod://demo/missing@1"));
+        Path sidecar = dir.resolve("catalogue.jsonl.idx");
+        assertTrue(Files.isRegularFile(sidecar));
+
+        byte[] written = Files.readAllBytes(sidecar);
+        var mapped = CatalogueIndex.open(catalogue);
+        assertEquals("a/compose.yaml", mapped.get("lcod://demo/a@1").get("compose"));
+        assertEquals("b/compose.yaml", mapped.get("lcod://demo/b@1").get("compose"));
+        assertNull(mapped.get("lcod://demo/missing@1"));
+        assertTrue(Arrays.equals(written, Files.readAllBytes(sidecar)), "sidecar should be reused as is");
+    }
+
+    @Test
+    void firstEntryForAnIdWins(@TempDir Path dir) throws Exception {
+        Path catalogue = write(dir.resolve("catalogue.jsonl"), CATALOGUE);
+        CatalogueIndex.open(catalogue);
+
+        assertEquals("a/compose.yaml", CatalogueIndex.open(catalogue).get("lcod://demo/a@1").get("compose"));
+    }
+
+    @Test
+    void rebuildsWhenTheCatalogueChanges(@TempDir Path dir) throws Exception {
+        Path catalogue = write(dir.resolve("catalogue.jsonl"), CATALOGUE);
+        CatalogueIndex.open(catalogue);
+
+        write(catalogue, CATALOGUE + "{\"id\":\"lcod://demo/c@1\",\"compose\":\"c/compose.yaml\"}\n");
+        var index = CatalogueIndex.open(catalogue);
+        assertTrue(index.matches(Files.readAttributes(catalogue, BasicFileAttributes.class)));
+        assertEquals("c/compose.yaml", index.get("lcod://demo/c@1").get("compose"));
+
+        // Same size, new modification time: the stale byte ranges must not be trusted.
+        write(catalogue, CATALOGUE.replace("lcod://demo/b@1", "lcod://demo/x@1")
+            + "{\"id\":\"lcod://demo/c@1\",\"compose\":\"c/compose.yaml\"}\n");
+        Files.setLastModifiedTime(catalogue, FileTime.from(Instant.now().plusSeconds(5)));
+        var renamed = CatalogueIndex.open(catalogue);
+        assertNull(renamed.get("lcod://demo/b@1"));
+        assertEquals("b/compose.yaml", renamed.get("lcod://demo/x@1").get("compose"));
+    }
+
+    @Test
+    void rebuildsTruncatedOrCorruptSidecars(@TempDir Path dir) throws Exception {
+        Path catalogue = write(dir.resolve("catalogue.jsonl"), CATALOGUE);
+        Path sidecar = dir.resolve("catalogue.jsonl.idx");
+        CatalogueIndex.open(catalogue);
+        byte[] valid = Files.readAllBytes(sidecar);
+
+        Files.write(sidecar, Arrays.copyOf(valid, 12));
+        assertEquals("b/compose.yaml", CatalogueIndex.open(catalogue).get("lcod://demo/b@1").get("compose"));
+
+        // Keep the header but point every record outside the catalogue and the id pool.
+        ByteBuffer corrupt = ByteBuffer.wrap(valid.clone());
+        int slotCount = corrupt.getInt(24);
+        int entryCount = corrupt.getInt(28);
+        for (int record = 0; record < entryCount; record++) {
+            int base = 32 + slotCount * 4 + record * 20;
+            corrupt.putLong(base, 1L << 40);
+            corrupt.putInt(base + 12, Integer.MAX_VALUE - 4);
+        }
+        Files.write(sidecar, corrupt.array());
+        var index = CatalogueIndex.open(catalogue);
+        assertEquals("a/compose.yaml", index.get("lcod://demo/a@1").get("compose"));
+        assertTrue(Arrays.equals(valid, Files.readAllBytes(sidecar)), "corrupt sidecar should be rewritten");
+    }
+
+    @Test
+    void keepsTheIndexInMemoryWhenTheDirectoryIsReadOnly(@TempDir Path dir) throws Exception {
+        Path readOnly = Files.createDirectory(dir.resolve("readonly"));
+        Path catalogue = write(readOnly.resolve("catalogue.jsonl"), CATALOGUE);
+        Files.setPosixFilePermissions(readOnly, PosixFilePermissions.fromString("r-xr-xr-x"));
+        try {
+            var index = CatalogueIndex.open(catalogue);
+            assertEquals("b/compose.yaml", index.get("lcod://demo/b@1").get("compose"));
+            assertEquals(Files.isWritable(readOnly), Files.exists(readOnly.resolve("catalogue.jsonl.idx")));
+            try (var listing = Files.list(readOnly)) {
+                assertTrue(listing.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")));
+            }
+        } finally {
+            Files.setPosixFilePermissions(readOnly, PosixFilePermissions.fromString("rwxr-xr-x"));
+        }
+    }
+
+    private static Path write(Path path, String content) throws Exception {
+        Files.writeString(path, content);
+        return path;
+    }
+}
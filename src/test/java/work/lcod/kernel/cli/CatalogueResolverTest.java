@@ -0,0 +1,152 @@
+package work.lcod.kernel.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class CatalogueResolverTest {
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String base;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                String path = exchange.getRequestURI().getPath();
+                hits.computeIfAbsent(path, ignored -> new AtomicInteger()).incrementAndGet();
+                int running = active.incrementAndGet();
+                maxActive.accumulateAndGet(running, Math::max);
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                }
+                byte[] body = files.get(path);
+                if (body == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void downloadsTheComponentAndPrefetchesItsDependenciesOnce() throws Exception {
+        serve("a", true, "lcod://demo/b@1", "lcod://demo/c@1", "lcod://demo/unlisted@1");
+        serve("b", true, "lcod://demo/a@1");
+        serve("c", false);
+        Path catalogue = catalogue("a", "b", "c");
+        Path cache = dir.resolve("cache");
+
+        Path compose = CatalogueResolver.resolve(catalogue, cache, "lcod://demo/a@1");
+
+        assertEquals(cache.resolve("components/demo_a/1/compose.yaml").toAbsolutePath().normalize(), compose);
+        assertEquals("compose: []\n", Files.readString(compose));
+        assertTrue(Files.isRegularFile(cache.resolve("components/demo_b/1/compose.yaml")));
+        assertTrue(Files.isRegularFile(cache.resolve("components/demo_b/1/lcp.toml")));
+        // c's compose is missing upstream: the prefetch failure does not fail the resolve.
+        assertFalse(Files.exists(cache.resolve("components/demo_c/1/compose.yaml")));
+        // The a <-> b cycle is fetched once per file.
+        for (String path : List.of("/a/compose.yaml", "/a/lcp.toml", "/b/compose.yaml", "/b/lcp.toml")) {
+            assertEquals(1, hits.get(path).get(), path);
+        }
+
+        CatalogueResolver.resolve(catalogue, cache, "lcod://demo/a@1");
+        assertEquals(1, hits.get("/a/compose.yaml").get());
+    }
+
+    @Test
+    void failsWhenTheRequestedComponentCannotBeFetched() throws Exception {
+        serve("broken", false);
+        Path catalogue = catalogue("broken");
+
+        assertThrows(IOException.class, () -> CatalogueResolver.resolve(catalogue, dir.resolve("cache"), "lcod://demo/broken@1"));
+        var missing = assertThrows(IOException.class,
+            () -> CatalogueResolver.resolve(catalogue, dir.resolve("cache"), "lcod://demo/absent@1"));
+        assertTrue(missing.getMessage().contains("not found"));
+    }
+
+    @Test
+    void boundsConcurrentDownloads() throws Exception {
+        List<String> names = new ArrayList<>(List.of("root"));
+        List<String> requires = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            names.add("dep" + i);
+            requires.add("lcod://demo/dep" + i + "@1");
+            serve("dep" + i, true);
+        }
+        serve("root", true, requires.toArray(String[]::new));
+
+        CatalogueResolver.resolve(catalogue(names.toArray(String[]::new)), dir.resolve("cache"), "lcod://demo/root@1");
+
+        assertEquals(26, hits.values().stream().mapToInt(AtomicInteger::get).sum());
+        assertTrue(maxActive.get() > 1, "downloads should overlap");
+        assertTrue(maxActive.get() <= Integer.getInteger("lcod.catalogue.downloads", 8), "at most " + maxActive.get());
+    }
+
+    private void serve(String name, boolean withCompose, String... requires) {
+        if (withCompose) {
+            files.put("/" + name + "/compose.yaml", "compose: []\n".getBytes(StandardCharsets.UTF_8));
+        }
+        var lcp = new StringBuilder("id = \"lcod://demo/" + name + "@1\"\n\n[deps]\nrequires = [");
+        for (int i = 0; i < requires.length; i++) {
+            lcp.append(i == 0 ? "" : ", ").append('"').append(requires[i]).append('"');
+        }
+        files.put("/" + name + "/lcp.toml", lcp.append("]\n").toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path catalogue(String... names) throws IOException {
+        var lines = new StringBuilder();
+        for (String name : names) {
+            lines.append("{\"id\":\"lcod://demo/").append(name).append("@1\",")
+                .append("\"compose\":\"").append(base).append('/').append(name).append("/compose.yaml\",")
+                .append("\"lcp\":\"").append(base).append('/').append(name).append("/lcp.toml\"}\n");
+        }
+        Path catalogue = dir.resolve("catalogue.jsonl");
+        Files.writeString(catalogue, lines);
+        return catalogue;
+    }
+}
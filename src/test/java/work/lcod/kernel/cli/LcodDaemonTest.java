@@ -0,0 +1,159 @@
+package work.lcod.kernel.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+final class LcodDaemonTest {
+    private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void forwardsRunsAndTheirExitCodesOverTheUnixSocket() throws Exception {
+        Path compose = writeCompose();
+        try (var server = start(new LcodDaemon.Address(dir.resolve("daemon.sock"), null))) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(dir.resolve("daemon.sock"))));
+
+            assertEquals(0, forward(server, request(compose.toString())), this::output);
+            assertTrue(stdout.toString(StandardCharsets.UTF_8).contains("\"echoed\" : 123"), this::output);
+
+            reset();
+            assertEquals(2, forward(server, request(dir.resolve("missing.yaml").toString())), this::output);
+            assertTrue(stderr.toString(StandardCharsets.UTF_8).contains("Compose file not found"), this::output);
+        }
+    }
+
+    @Test
+    void resolvesRelativePathsAgainstTheClientDirectory() throws Exception {
+        writeCompose();
+        var request = request("compose.yaml");
+        request.put("cwd", dir.toString());
+        try (var server = start(new LcodDaemon.Address(dir.resolve("daemon.sock"), null))) {
+            assertEquals(0, forward(server, request), this::output);
+            assertTrue(stdout.toString(StandardCharsets.UTF_8).contains("\"echoed\" : 123"), this::output);
+        }
+    }
+
+    @Test
+    void tcpClientsMustPresentTheDaemonToken() throws Exception {
+        Path compose = writeCompose();
+        var loopback = new LcodDaemon.Address(null, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Path tokenFile;
+        try (var server = start(loopback)) {
+            tokenFile = server.address().tokenFile();
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+            assertEquals(0, forward(server, request(compose.toString())), this::output);
+
+            reset();
+            String token = Files.readString(tokenFile);
+            Files.writeString(tokenFile, "not-the-token");
+            assertEquals(1, forward(server, request(compose.toString())), this::output);
+            assertTrue(stderr.toString(StandardCharsets.UTF_8).contains("invalid token"), this::output);
+            assertEquals("", stdout.toString(StandardCharsets.UTF_8));
+            Files.writeString(tokenFile, token);
+        }
+        assertTrue(Files.notExists(tokenFile), "closing the daemon removes its token");
+    }
+
+    @Test
+    void onlyReplacesStaleSockets() throws Exception {
+        Path file = dir.resolve("not-a-socket");
+        Files.writeString(file, "keep me");
+        assertThrows(IOException.class, () -> LcodDaemon.Server.open(new LcodDaemon.Address(file, null)));
+        assertEquals("keep me", Files.readString(file));
+
+        Path socket = dir.resolve("daemon.sock");
+        try (var server = start(new LcodDaemon.Address(socket, null))) {
+            var busy = assertThrows(IOException.class, () -> LcodDaemon.Server.open(new LcodDaemon.Address(socket, null)));
+            assertTrue(busy.getMessage().contains("already listening"), busy.getMessage());
+            assertEquals(0, forward(server, request(writeCompose().toString())), this::output);
+        }
+
+        // A socket file left behind by a daemon that died is taken over.
+        try (var stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            stale.bind(UnixDomainSocketAddress.of(socket));
+        }
+        assertTrue(Files.exists(socket));
+        try (var server = start(new LcodDaemon.Address(socket, null))) {
+            assertEquals(0, forward(server, request(writeCompose().toString())), this::output);
+        }
+    }
+
+    @Test
+    void createsMissingSocketDirectoriesOwnerOnly() throws Exception {
+        Path socket = dir.resolve("private").resolve("daemon.sock");
+        try (var server = start(new LcodDaemon.Address(socket, null))) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(socket.getParent())));
+        }
+    }
+
+    private LcodDaemon.Server start(LcodDaemon.Address address) throws Exception {
+        var server = LcodDaemon.Server.open(address);
+        var thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }, "lcod-daemon-test");
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    private int forward(LcodDaemon.Server server, Map<String, Object> request) throws Exception {
+        return LcodDaemon.forward(server.address(), request,
+            new PrintStream(stdout, true, StandardCharsets.UTF_8), new PrintStream(stderr, true, StandardCharsets.UTF_8));
+    }
+
+    private Path writeCompose() throws Exception {
+        Path compose = dir.resolve("compose.yaml");
+        Files.writeString(compose, String.join("\n",
+            "compose:",
+            "  - call: lcod://impl/set@1",
+            "    in:",
+            "      value: 123",
+            "    out:",
+            "      echoed: value",
+            ""));
+        return compose;
+    }
+
+    private Map<String, Object> request(String compose) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("compose", List.of(compose));
+        request.put("input", "{}");
+        request.put("cacheDir", dir.resolve("cache").toString());
+        return request;
+    }
+
+    private void reset() {
+        stdout.reset();
+        stderr.reset();
+    }
+
+    private String output() {
+        return "stdout=" + stdout.toString(StandardCharsets.UTF_8) + " stderr=" + stderr.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -80,6 +80,50 @@ final class FlowForeachTest {
         assertEquals(List.of(1, 3), result.get("results"));
     }
 
+    @Test
+    void parallelModeKeepsOrderAndSignals() throws Exception {
+        var ctx = KernelTestSupport.demoContext();
+        var in = new LinkedHashMap<String, Object>();
+        in.put("list", "$.numbers");
+        in.put("parallel", true);
+        in.put("concurrency", 3);
+        var compose = List.of(foreachStep(
+            in,
+            List.of(
+                call("lcod://impl/is_even@1", Map.of("value", "$slot.item"), Map.of("isEven", "ok")),
+                flowIf("$.isEven", List.of(call("lcod://flow/continue@1", null, null)), List.of()),
+                call("lcod://impl/gt@1", Map.of("value", "$slot.item", "limit", 7), Map.of("tooBig", "ok")),
+                flowIf("$.tooBig", List.of(call("lcod://flow/break@1", null, null)), List.of()),
+                echoStep("$slot.item")
+            ),
+            null,
+            "$.val"
+        ));
+
+        var result = ComposeRunner.runSteps(ctx, compose, Map.of("numbers", List.of(1, 2, 3, 5, 8, 9, 11)), Map.of());
+        assertEquals(List.of(1, 3, 5), result.get("results"));
+    }
+
+    @Test
+    void pullsItemsLazilyFromIterators() throws Exception {
+        var ctx = KernelTestSupport.demoContext();
+        var compose = List.of(foreachStep(
+            Map.of("list", "$.numbers"),
+            List.of(
+                call("lcod://impl/gt@1", Map.of("value", "$slot.item", "limit", 3), Map.of("tooBig", "ok")),
+                flowIf("$.tooBig", List.of(call("lcod://flow/break@1", null, null)), List.of()),
+                echoStep("$slot.item")
+            ),
+            null,
+            "$.val"
+        ));
+
+        var unbounded = java.util.stream.Stream.iterate(1, n -> n + 1).iterator();
+        var result = ComposeRunner.runSteps(ctx, compose, Map.of("numbers", unbounded), Map.of());
+        assertEquals(List.of(1, 2, 3), result.get("results"));
+        assertEquals(5, unbounded.next());
+    }
+
     @Test
     void specForeachCtrlDemoMatchesReferenceOutput() throws Exception {
         Optional<Path> specRoot = KernelTestSupport.locateSpecRepo();
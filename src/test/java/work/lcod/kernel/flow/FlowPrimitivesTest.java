@@ -134,6 +134,38 @@ class FlowPrimitivesTest {
         assertIterableEquals(List.of("a", "b", "c"), (List<?>) state.get("joined"));
     }
 
+    @Test
+    void flowParallelFailsFastAndCancelsSiblings() throws Exception {
+        var registry = baseRegistry();
+        FlowPrimitives.register(registry);
+        var started = new java.util.concurrent.CountDownLatch(2);
+        registry.register("test://task@1", (taskCtx, input, meta) -> {
+            started.countDown();
+            if ("fail".equals(input.get("task"))) {
+                started.await();
+                throw new FlowErrorException("task_failed", "task failed", null);
+            }
+            while (true) {
+                taskCtx.ensureNotCancelled();
+                Thread.sleep(10);
+            }
+        });
+        var ctx = new ExecutionContext(registry);
+
+        var parallel = new LinkedHashMap<String, Object>();
+        parallel.put("call", "lcod://flow/parallel@1");
+        parallel.put("in", Map.of("tasks", List.of("wait", "fail"), "concurrency", 2));
+        parallel.put("slots", Map.of(
+            "tasks", List.of(Map.of(
+                "call", "test://task@1",
+                "in", Map.of("task", "$slot.item")
+            ))
+        ));
+
+        var error = assertThrows(FlowErrorException.class, () -> ComposeRunner.runSteps(ctx, List.of(parallel), new LinkedHashMap<>(), Map.of()));
+        assertEquals("task_failed", error.code());
+    }
+
     @Test
     void flowCheckAbortPassThrough() throws Exception {
         var registry = baseRegistry();
@@ -1,12 +1,28 @@
 package work.lcod.kernel.runtime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class ComposeRunnerTest {
     @Test
@@ -49,4 +65,393 @@ class ComposeRunnerTest {
         assertEquals(7, finalState.get("copy"));
         assertTrue(finalState.containsKey("count"));
     }
+
+    @Test
+    void reusesCompiledPlanAcrossRunsAndRegistrations() throws Exception {
+        var registry = new Registry();
+        registry.register("demo.value", (ctx, input, meta) -> Map.of("value", 1));
+
+        var step = new LinkedHashMap<String, Object>();
+        step.put("call", "demo.value");
+        step.put("out", Map.of("result", "value"));
+        var plan = ComposePlan.compile(List.of(step));
+
+        var first = ComposeRunner.runSteps(new ExecutionContext(registry), plan, new LinkedHashMap<>(), Map.of());
+        assertEquals(1, first.get("result"));
+
+        registry.register("demo.value", (ctx, input, meta) -> Map.of("value", 2));
+        var second = ComposeRunner.runSteps(new ExecutionContext(registry), plan, new LinkedHashMap<>(), Map.of());
+        assertEquals(2, second.get("result"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void calleeMutationsDoNotLeakIntoSharedState() throws Exception {
+        var registry = new Registry();
+        registry.register("demo.mutate", (ctx, input, meta) -> {
+            var items = (List<Object>) input.get("items");
+            items.add("extra");
+            ((Map<String, Object>) items.get(0)).put("name", "changed");
+            return Map.of("items", items);
+        });
+        var ctx = new ExecutionContext(registry);
+
+        var step = new LinkedHashMap<String, Object>();
+        step.put("call", "demo.mutate");
+        step.put("in", Map.of("items", "$.items"));
+        step.put("out", Map.of("mutated", "items"));
+
+        var original = new java.util.ArrayList<Object>();
+        original.add(new LinkedHashMap<>(Map.of("name", "first")));
+        var initial = new LinkedHashMap<String, Object>();
+        initial.put("items", original);
+
+        var finalState = ComposeRunner.runSteps(ctx, List.of(step), initial, Map.of());
+        assertEquals(List.of(Map.of("name", "first")), finalState.get("items"));
+        assertEquals(List.of(Map.of("name", "changed"), "extra"), finalState.get("mutated"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sharedViewsCopyOnceAcrossThreads() throws Exception {
+        var nested = new LinkedHashMap<String, Object>(Map.of("count", 0));
+        var view = (Map<String, Object>) StateValues.share(Map.of("nested", nested));
+        var start = new java.util.concurrent.CountDownLatch(1);
+        var pool = java.util.concurrent.Executors.newFixedThreadPool(8);
+        try {
+            var reads = new ArrayList<java.util.concurrent.Future<Object>>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(pool.submit(() -> {
+                    start.await();
+                    return view.get("nested");
+                }));
+            }
+            start.countDown();
+            Object first = reads.get(0).get();
+            for (var read : reads) {
+                assertTrue(first == read.get(), "every thread should see the same nested view");
+            }
+            ((Map<String, Object>) first).put("count", 1);
+            assertEquals(1, ((Map<String, Object>) view.get("nested")).get("count"));
+            assertEquals(0, nested.get("count"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sharingAWrittenViewSnapshotsItsContents() {
+        var source = Map.<String, Object>of("nested", Map.of("count", 0), "items", List.of(1));
+        var view = (Map<String, Object>) StateValues.share(source);
+        view.put("top", "before");
+        ((Map<String, Object>) view.get("nested")).put("count", 1);
+
+        var shared = (Map<String, Object>) StateValues.share(view);
+        view.put("top", "after");
+        ((Map<String, Object>) view.get("nested")).put("count", 2);
+        ((List<Object>) view.get("items")).add(2);
+
+        assertEquals("before", shared.get("top"));
+        assertEquals(1, ((Map<String, Object>) shared.get("nested")).get("count"));
+        assertEquals(List.of(1), shared.get("items"));
+        assertEquals(Map.of("count", 0), source.get("nested"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void iteratingAViewLeavesTheSharedSourceUntouched() {
+        var source = new LinkedHashMap<String, Object>(Map.of("nested", new LinkedHashMap<>(Map.of("count", 0))));
+        var view = (Map<String, Object>) StateValues.share(source);
+
+        assertEquals(source, view);
+        assertEquals(source.hashCode(), view.hashCode());
+        for (var entry : view.entrySet()) {
+            ((Map<String, Object>) entry.getValue()).put("count", 1);
+        }
+        view.entrySet().iterator().next().setValue("replaced");
+
+        assertEquals("replaced", view.get("nested"));
+        assertEquals(Map.of("count", 0), source.get("nested"));
+    }
+
+    @Test
+    void forkedContextsRunChildrenOnSeparateThreads() throws Exception {
+        var registry = new Registry();
+        registry.register("demo.value", (ctx, input, meta) -> Map.of("value", input.get("value")));
+        registry.register("demo.fork", (ctx, input, meta) -> {
+            var left = ctx.fork();
+            var right = ctx.fork();
+            var pending = java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+                try {
+                    return left.runSlot("children", null, Map.of("value", 1));
+                } catch (Exception ex) {
+                    throw new java.util.concurrent.CompletionException(ex);
+                }
+            });
+            var second = right.runSlot("children", null, Map.of("value", 2));
+            return Map.of("left", pending.join().get("value"), "right", second.get("value"));
+        });
+        var ctx = new ExecutionContext(registry);
+
+        var child = new LinkedHashMap<String, Object>();
+        child.put("call", "demo.value");
+        child.put("in", Map.of("value", "$slot.value"));
+        child.put("out", Map.of("value", "value"));
+
+        var step = new LinkedHashMap<String, Object>();
+        step.put("call", "demo.fork");
+        step.put("children", List.of(child));
+        step.put("out", Map.of("left", "left", "right", "right"));
+
+        var finalState = ComposeRunner.runSteps(ctx, List.of(step), new LinkedHashMap<>(), Map.of());
+        assertEquals(1, finalState.get("left"));
+        assertEquals(2, finalState.get("right"));
+    }
+
+    @Test
+    void overlayRegistriesShadowFrozenBase() throws Exception {
+        var base = new Registry();
+        base.register("demo.value", (ctx, input, meta) -> Map.of("value", "base"));
+        base.freeze();
+        var overlay = base.overlay();
+        overlay.register("demo.value", (ctx, input, meta) -> Map.of("value", "overlay"));
+
+        var step = new LinkedHashMap<String, Object>();
+        step.put("call", "demo.value");
+        step.put("out", Map.of("result", "value"));
+
+        var fromOverlay = ComposeRunner.runSteps(new ExecutionContext(overlay), List.of(step), new LinkedHashMap<>(), Map.of());
+        assertEquals("overlay", fromOverlay.get("result"));
+        var fromBase = ComposeRunner.runSteps(new ExecutionContext(base.overlay()), List.of(step), new LinkedHashMap<>(), Map.of());
+        assertEquals("base", fromBase.get("result"));
+        assertThrows(IllegalStateException.class, () -> base.register("demo.other", (ctx, input, meta) -> Map.of()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void memoisesPureComponentsOnTheirInput() throws Exception {
+        var calls = new AtomicInteger();
+        // Unique id: the in-memory tier of the result cache is process-wide.
+        String id = "test://pure.square@" + System.nanoTime();
+        var registry = new Registry();
+        registry.register(id, (ctx, input, meta) -> {
+            calls.incrementAndGet();
+            int value = ((Number) input.get("value")).intValue();
+            return new LinkedHashMap<>(Map.of("square", value * value, "tags", new ArrayList<>(List.of("a"))));
+        }, List.of(), new ComponentMetadata(List.of("value"), List.of("square", "tags"), List.of(), true));
+        var ctx = new ExecutionContext(registry);
+
+        var first = (Map<String, Object>) ctx.call(id, Map.of("value", 3), null);
+        ((List<Object>) first.get("tags")).add("mutated");
+        var second = (Map<String, Object>) ctx.call(id, Map.of("value", 3), null);
+        assertEquals(9, second.get("square"));
+        assertEquals(List.of("a"), second.get("tags"));
+        assertEquals(1, calls.get());
+
+        var other = (Map<String, Object>) ctx.call(id, Map.of("value", 4), null);
+        assertEquals(16, other.get("square"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void memoisedResultsFollowTheComponentDefinition(@TempDir Path dir) throws Exception {
+        String id = "test://pure.version@" + System.nanoTime();
+        var metadata = new ComponentMetadata(List.of(), List.of("value"), List.of(), true);
+        var first = new Registry();
+        first.register(id, (ctx, input, meta) -> Map.of("value", "first"), List.of(), metadata);
+        var second = new Registry();
+        second.register(id, (ctx, input, meta) -> Map.of("value", "second"), List.of(), metadata);
+        assertEquals(Map.of("value", "first"), new ExecutionContext(first).call(id, Map.of(), null));
+        assertEquals(Map.of("value", "second"), new ExecutionContext(second).call(id, Map.of(), null));
+
+        // Fingerprinted definitions share the disk tier until the definition changes.
+        String diskId = "test://pure.disk@" + System.nanoTime();
+        var calls = new AtomicInteger();
+        for (String fingerprint : List.of("sha256-a", "sha256-a", "sha256-b")) {
+            var registry = new Registry();
+            registry.register(diskId, (ctx, input, meta) -> Map.of("value", calls.incrementAndGet()), List.of(),
+                metadata.withFingerprint(fingerprint));
+            var ctx = new ExecutionContext(registry);
+            ctx.setResultCache(ResultCache.withDirectory(dir));
+            ctx.call(diskId, Map.of(), null);
+        }
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void cachedComposesFollowManifestChanges(@TempDir Path dir) throws Exception {
+        Path compose = dir.resolve("compose.yaml");
+        Files.writeString(compose, "compose:\n  - call: helper/echo\n    in:\n      value: 1\n");
+        Path manifest = dir.resolve("lcp.toml");
+        Files.writeString(manifest, "id = \"lcod://demo/cached@1.0.0\"\nversion = \"1.0.0\"\n");
+
+        assertEquals("lcod://demo/cached/helper/echo@1.0.0", ComposeLoader.loadFromLocalFile(compose).get(0).get("call"));
+        var again = ComposeLoader.loadFromLocalFile(compose);
+        assertEquals("lcod://demo/cached/helper/echo@1.0.0", again.get(0).get("call"));
+        assertEquals(Map.of("value", 1), again.get(0).get("in"));
+
+        Files.writeString(manifest, "id = \"lcod://demo/cached@2.0.0\"\nversion = \"2.0.0\"\n");
+        assertEquals("lcod://demo/cached/helper/echo@2.0.0", ComposeLoader.loadFromLocalFile(compose).get(0).get("call"));
+    }
+
+    @Test
+    void compiledPlansFollowManifestChanges(@TempDir Path dir) throws Exception {
+        Path workspace = dir.resolve("workspace");
+        Path compose = workspace.resolve("pkg").resolve("compose.yaml");
+        Files.createDirectories(compose.getParent());
+        Files.writeString(compose, "compose:\n  - call: helper/echo\n");
+        Path manifest = compose.resolveSibling("lcp.toml");
+        Files.writeString(manifest, "id = \"lcod://demo/plan@1.0.0\"\nversion = \"1.0.0\"\n");
+
+        var plan = ComposeLoader.loadPlanFromLocalFile(compose);
+        assertEquals("lcod://demo/plan/helper/echo@1.0.0", plan.source().get(0).get("call"));
+        assertTrue(plan == ComposeLoader.loadPlanFromLocalFile(compose), "unchanged files reuse the compiled plan");
+
+        Files.writeString(manifest, "id = \"lcod://demo/plan@10.0.0\"\nversion = \"10.0.0\"\n");
+        assertEquals("lcod://demo/plan/helper/echo@10.0.0",
+            ComposeLoader.loadPlanFromLocalFile(compose).source().get(0).get("call"));
+
+        // A workspace manifest appearing above the package also invalidates the plan.
+        plan = ComposeLoader.loadPlanFromLocalFile(compose);
+        Files.writeString(workspace.resolve("workspace.lcp.toml"), "[workspace]\n");
+        assertTrue(plan != ComposeLoader.loadPlanFromLocalFile(compose), "a new workspace manifest recompiles the plan");
+    }
+
+    @Test
+    void runsKeepParsedComposesUnderTheirCacheDirectory(@TempDir Path dir) throws Exception {
+        Path compose = dir.resolve("compose.yaml");
+        Files.writeString(compose, "compose:\n  - call: lcod://demo/run-cache@1\n");
+        Path cacheDirectory = dir.resolve(".lcod").resolve("cache");
+
+        ComposeLoader.loadFromLocalFile(compose, cacheDirectory);
+
+        try (var entries = Files.walk(cacheDirectory.resolve("compose"))) {
+            assertEquals(1, entries.filter(path -> path.toString().endsWith(".bin")).count());
+        }
+    }
+
+    @Test
+    void composeCacheEvictsLeastRecentlyUsedEntries(@TempDir Path dir) throws Exception {
+        List<Map<String, Object>> steps = List.of(Map.of("call", "lcod://demo/evicted@1"));
+        List<String> keys = new ArrayList<>();
+        long entrySize = 0;
+        for (int i = 0; i < 4; i++) {
+            String key = ComposeDiskCache.key(("compose-" + i).getBytes(StandardCharsets.UTF_8), null, null);
+            keys.add(key);
+            ComposeDiskCache.write(dir, key, steps);
+            Path file = dir.resolve(key.substring(0, 2)).resolve(key + ".bin");
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(4 - i))));
+            entrySize = Files.size(file);
+        }
+        // A hit makes the oldest entry the most recently used one.
+        assertEquals(steps, ComposeDiskCache.read(dir, keys.get(0)));
+
+        ComposeDiskCache.prune(dir, entrySize * 3);
+
+        assertEquals(steps, ComposeDiskCache.read(dir, keys.get(0)));
+        assertNull(ComposeDiskCache.read(dir, keys.get(1)));
+        assertNull(ComposeDiskCache.read(dir, keys.get(2)));
+        assertEquals(steps, ComposeDiskCache.read(dir, keys.get(3)));
+    }
+
+    @Test
+    void remoteComposesAreRevalidatedAndServedOffline(@TempDir Path cache) throws Exception {
+        byte[] body = "compose:\n  - call: lcod://demo/remote@1\n".getBytes(StandardCharsets.UTF_8);
+        var fullResponses = new AtomicInteger();
+        var notModified = new AtomicInteger();
+        var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/compose.yaml", exchange -> {
+            try (exchange) {
+                exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                fullResponses.incrementAndGet();
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/compose.yaml");
+        try {
+            var first = ComposeLoader.loadFromHttp(uri, cache, Duration.ZERO, false);
+            var second = ComposeLoader.loadFromHttp(uri, cache, Duration.ZERO, false);
+            ComposeLoader.loadFromHttp(uri, cache, Duration.ofHours(1), false);
+            assertEquals("lcod://demo/remote@1", first.get(0).get("call"));
+            assertEquals(first, second);
+            assertEquals(1, fullResponses.get());
+            assertEquals(1, notModified.get());
+        } finally {
+            server.stop(0);
+        }
+
+        assertEquals("lcod://demo/remote@1", ComposeLoader.loadFromHttp(uri, cache, Duration.ZERO, true).get(0).get("call"));
+        assertThrows(IllegalStateException.class,
+            () -> ComposeLoader.loadFromHttp(URI.create("http://127.0.0.1:1/missing.yaml"), cache, Duration.ZERO, true));
+    }
+
+    @Test
+    void sharedDownloadsSurviveAnInterruptedInitiator() throws Exception {
+        byte[] body = "compose: []\n".getBytes(StandardCharsets.UTF_8);
+        var requests = new AtomicInteger();
+        var firstRequest = new java.util.concurrent.CountDownLatch(1);
+        var release = new java.util.concurrent.CountDownLatch(1);
+        var server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/slow.yaml", exchange -> {
+            try (exchange) {
+                if (requests.incrementAndGet() == 1) {
+                    firstRequest.countDown();
+                    release.await(10, java.util.concurrent.TimeUnit.SECONDS);
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        var serverThreads = java.util.concurrent.Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/slow.yaml");
+        try {
+            var initiator = fetchOnThread(uri);
+            assertTrue(firstRequest.await(10, java.util.concurrent.TimeUnit.SECONDS));
+            var interruptedWaiter = fetchOnThread(uri);
+            var waiter = fetchOnThread(uri);
+            Thread.sleep(200);
+
+            // A waiter's own interruption ends its wait without touching the download.
+            interruptedWaiter.thread().interrupt();
+            assertTrue(interruptedWaiter.result().get(5, java.util.concurrent.TimeUnit.SECONDS) instanceof InterruptedException);
+            assertFalse(initiator.result().isDone());
+
+            // The initiator's interruption is not handed to the remaining waiter: it downloads again itself.
+            initiator.thread().interrupt();
+            assertTrue(initiator.result().get(5, java.util.concurrent.TimeUnit.SECONDS) instanceof InterruptedException);
+            assertTrue(java.util.Arrays.equals(body, (byte[]) waiter.result().get(5, java.util.concurrent.TimeUnit.SECONDS)));
+            assertEquals(2, requests.get());
+        } finally {
+            release.countDown();
+            server.stop(0);
+            serverThreads.shutdownNow();
+        }
+    }
+
+    private record Fetch(Thread thread, java.util.concurrent.CompletableFuture<Object> result) {}
+
+    private static Fetch fetchOnThread(URI uri) {
+        var result = new java.util.concurrent.CompletableFuture<Object>();
+        var thread = new Thread(() -> {
+            try {
+                result.complete(HttpComposeCache.fetch(uri, null, Duration.ZERO, false));
+            } catch (Exception ex) {
+                result.complete(ex);
+            }
+        });
+        thread.start();
+        return new Fetch(thread, result);
+    }
 }
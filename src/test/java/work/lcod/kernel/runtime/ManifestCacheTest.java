@@ -0,0 +1,66 @@
+package work.lcod.kernel.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ManifestCacheTest {
+    @Test
+    void reparsesManifestsWhenTheyChange(@TempDir Path dir) throws Exception {
+        Path manifest = dir.resolve("lcp.toml");
+        Files.writeString(manifest, "version = \"1.0.0\"\n");
+
+        var first = ManifestCache.parse(manifest);
+        assertEquals("1.0.0", first.getString("version"));
+        assertSame(first, ManifestCache.parse(manifest));
+
+        Files.writeString(manifest, "version = \"1.10.0\"\n");
+        assertEquals("1.10.0", ManifestCache.parse(manifest).getString("version"));
+
+        Files.delete(manifest);
+        assertNull(ManifestCache.parse(manifest));
+    }
+
+    @Test
+    void parsesGivenContentEvenWhenTheFileStampIsUnchanged(@TempDir Path dir) throws Exception {
+        Path manifest = dir.resolve("lcp.toml");
+        Files.writeString(manifest, "version = \"1.0.0\"\n");
+        FileTime modified = Files.getLastModifiedTime(manifest);
+        var cached = ManifestCache.parse(manifest);
+
+        assertSame(cached, ManifestCache.parse(manifest, Files.readAllBytes(manifest)));
+
+        // Same size, same modification time: only the content tells the versions apart.
+        Files.writeString(manifest, "version = \"2.0.0\"\n");
+        Files.setLastModifiedTime(manifest, modified);
+        assertEquals("2.0.0", ManifestCache.parse(manifest, Files.readAllBytes(manifest)).getString("version"));
+        assertNull(ManifestCache.parse(manifest, null));
+    }
+
+    @Test
+    void workspaceLookupsFollowManifestsBeingAddedAndRemoved(@TempDir Path dir) throws Exception {
+        Path root = Files.createDirectories(dir.resolve("root"));
+        Path nested = Files.createDirectories(root.resolve("packages").resolve("demo"));
+        assertNull(ManifestCache.findWorkspaceRoot(nested, 3));
+
+        Path rootManifest = Files.writeString(root.resolve(ManifestCache.WORKSPACE_MANIFEST), "[workspace]\n");
+        assertEquals(root.toAbsolutePath().normalize(), ManifestCache.findWorkspaceRoot(nested, 3));
+        assertEquals(rootManifest.toAbsolutePath().normalize(), ManifestCache.findWorkspaceManifest(nested));
+        assertNull(ManifestCache.findWorkspaceRoot(nested, 2));
+
+        Path nestedManifest = Files.writeString(nested.resolve(ManifestCache.WORKSPACE_MANIFEST), "[workspace]\n");
+        assertEquals(nestedManifest.toAbsolutePath().normalize(), ManifestCache.findWorkspaceManifest(nested));
+
+        Files.delete(nestedManifest);
+        assertEquals(rootManifest.toAbsolutePath().normalize(), ManifestCache.findWorkspaceManifest(nested));
+
+        Files.delete(rootManifest);
+        assertNull(ManifestCache.findWorkspaceManifest(nested));
+    }
+}
@@ -0,0 +1,74 @@
+package work.lcod.kernel.tooling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+final class ScriptContextPoolTest {
+    @Test
+    void reusesIdleSessionsPerKey() throws Exception {
+        var pool = new ScriptContextPool<Session>(2);
+
+        var first = pool.acquire("a", Session::new, false);
+        pool.release(first, true);
+        var again = pool.acquire("a", Session::new, false);
+        var other = pool.acquire("b", Session::new, false);
+
+        assertSame(first.value(), again.value());
+        assertNotSame(first.value(), other.value());
+        assertEquals(1L, pool.stats().get("hits"));
+        assertEquals(2L, pool.stats().get("misses"));
+        pool.release(again, true);
+        pool.release(other, true);
+    }
+
+    @Test
+    void closesSessionsThatCannotBeReused() throws Exception {
+        var pool = new ScriptContextPool<Session>(1);
+
+        var lease = pool.acquire("a", Session::new, false);
+        pool.release(lease, false);
+        var next = pool.acquire("a", Session::new, false);
+
+        assertTrue(lease.value().closed);
+        assertNotSame(lease.value(), next.value());
+        pool.release(next, true);
+    }
+
+    @Test
+    void nestedCallersNeverWaitForAFullPool() throws Exception {
+        var pool = new ScriptContextPool<Session>(1);
+        var outer = pool.acquire("a", Session::new, false);
+
+        // A nested script may run on a forked context's worker thread, not the thread holding the outer lease.
+        var nested = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire("a", Session::new, true);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertFalse(nested.pooled());
+        assertEquals(1L, pool.stats().get("overflows"));
+        pool.release(nested, true);
+        assertTrue(nested.value().closed);
+        pool.release(outer, true);
+        assertEquals(0, pool.stats().get("active"));
+    }
+
+    private static final class Session implements AutoCloseable {
+        private boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
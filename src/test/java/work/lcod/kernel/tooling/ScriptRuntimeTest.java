@@ -0,0 +1,106 @@
+package work.lcod.kernel.tooling;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.graalvm.polyglot.Context;
+import org.junit.jupiter.api.Test;
+import work.lcod.kernel.runtime.ComposeRunner;
+import work.lcod.kernel.runtime.ExecutionContext;
+import work.lcod.kernel.runtime.KernelRegistry;
+
+final class ScriptRuntimeTest {
+    @Test
+    void reusesTheCompiledSourceForTheSameCode() {
+        String code = "(function(){ return 'same-" + System.nanoTime() + "'; })";
+        long hits = sourceCounter("hits");
+
+        var first = ScriptRuntime.cachedSource(code);
+        var second = ScriptRuntime.cachedSource(code);
+
+        assertSame(first, second);
+        assertEquals(hits + 1, sourceCounter("hits"));
+        assertNotSame(first, ScriptRuntime.cachedSource(code + " "));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedSources() {
+        String prefix = "(function(){ return 'lru-" + System.nanoTime() + "-";
+        var stale = ScriptRuntime.cachedSource(prefix + "stale'; })");
+        var kept = ScriptRuntime.cachedSource(prefix + "kept'; })");
+        for (int i = 0; i < ScriptRuntime.SOURCE_CACHE_LIMIT; i++) {
+            ScriptRuntime.cachedSource(prefix + i + "'; })");
+            // Touching an entry moves it to the young end of the LRU.
+            assertSame(kept, ScriptRuntime.cachedSource(prefix + "kept'; })"));
+        }
+
+        assertSame(kept, ScriptRuntime.cachedSource(prefix + "kept'; })"));
+        assertNotSame(stale, ScriptRuntime.cachedSource(prefix + "stale'; })"));
+        assertTrue(((Number) ScriptRuntime.sourceCacheStats().get("size")).intValue() <= ScriptRuntime.SOURCE_CACHE_LIMIT);
+    }
+
+    @Test
+    void compiledSourcesKeepStatePerContext() {
+        var source = ScriptRuntime.cachedSource("(function(){ let calls = 0; return () => ++calls; })()");
+        try (var left = Context.newBuilder("js").engine(ScriptRuntime.engine()).build();
+             var right = Context.newBuilder("js").engine(ScriptRuntime.engine()).build()) {
+            var leftCounter = left.eval(source);
+            var rightCounter = right.eval(source);
+
+            assertSame(left.getEngine(), right.getEngine());
+            leftCounter.execute();
+            assertEquals(2, leftCounter.execute().asInt());
+            assertEquals(1, rightCounter.execute().asInt());
+        }
+    }
+
+    @Test
+    void sessionsWithDifferentToolsShareCompiledScripts() throws Exception {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        String source = "({ state }) => ({ sum: state.values.reduce((a, b) => a + b, 0), marker: " + System.nanoTime() + " })";
+        long misses = sourceCounter("misses");
+        long hits = sourceCounter("hits");
+
+        for (String tool : List.of("sharedSourceLeft", "sharedSourceRight")) {
+            var step = Map.<String, Object>of(
+                "call", "lcod://tooling/script@1",
+                "in", Map.of(
+                    "source", source,
+                    "input", Map.of("values", List.of(1, 2, 3)),
+                    "tools", List.of(Map.of("name", tool, "source", "() => 1"))
+                ),
+                "out", Map.of("sum", "sum")
+            );
+            var state = ComposeRunner.runSteps(ctx, List.of(step), new LinkedHashMap<>(), Map.of());
+            assertEquals(6, state.get("sum"));
+        }
+
+        // Both sessions wrap the same tool and script code: at most one miss each, the second session only hits.
+        assertTrue(sourceCounter("misses") - misses <= 2, "script source should be compiled once");
+        assertTrue(sourceCounter("hits") - hits >= 2, "second session should reuse the cached sources");
+    }
+
+    @Test
+    void tracksTimingsForABoundedNumberOfScripts() {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        String prefix = "generated-" + System.nanoTime() + "-";
+        for (int i = 0; i <= ScriptRuntime.SOURCE_CACHE_LIMIT; i++) {
+            ScriptRuntime.recordTiming(ctx, prefix + i, 1_000L, false);
+        }
+
+        var timings = ScriptRuntime.scriptTimings();
+        assertTrue(timings.size() <= ScriptRuntime.SOURCE_CACHE_LIMIT);
+        assertFalse(timings.containsKey(prefix + 0));
+        assertTrue(timings.containsKey(prefix + ScriptRuntime.SOURCE_CACHE_LIMIT));
+    }
+
+    private static long sourceCounter(String name) {
+        return ((Number) ScriptRuntime.sourceCacheStats().get(name)).longValue();
+    }
+}
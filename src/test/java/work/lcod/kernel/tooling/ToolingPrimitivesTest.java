@@ -1,8 +1,10 @@
 package work.lcod.kernel.tooling;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
@@ -12,8 +14,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import work.lcod.kernel.core.CorePrimitives;
 import work.lcod.kernel.demo.DemoPrimitives;
+import work.lcod.kernel.flow.FlowErrorException;
 import work.lcod.kernel.flow.FlowPrimitives;
 import work.lcod.kernel.runtime.ComposeRunner;
 import work.lcod.kernel.runtime.ExecutionContext;
@@ -247,4 +251,317 @@ final class ToolingPrimitivesTest {
         assertEquals(List.of("foo", "bar"), items, () -> "mutable list did not update: " + items + " input=" + input);
         assertEquals(2, result.get("length"));
     }
+
+    @Test
+    void registryScopeKeepsInlineComponentsAndBindingsLocal() throws Exception {
+        var registry = baseRegistry();
+        registry.register("lcod://impl/contract-echo@1", (ctx, input, meta) -> Map.of("value", "bound"));
+        var ctx = new ExecutionContext(registry);
+
+        var scope = new LinkedHashMap<String, Object>();
+        scope.put("call", "lcod://tooling/registry/scope@1");
+        scope.put("in", Map.of(
+            "bindings", Map.of("lcod://contract/demo/echo@1", "lcod://impl/contract-echo@1"),
+            "components", List.of(Map.of(
+                "id", "lcod://inline/answer@1",
+                "compose", List.of(Map.of(
+                    "call", "lcod://impl/set@1",
+                    "in", Map.of("answer", 42),
+                    "out", Map.of("answer", "answer")
+                ))
+            ))
+        ));
+        scope.put("children", List.of(
+            Map.of("call", "lcod://inline/answer@1", "out", Map.of("answer", "answer")),
+            Map.of("call", "lcod://contract/demo/echo@1", "out", Map.of("bound", "value"))
+        ));
+        scope.put("out", Map.of("answer", "answer", "bound", "bound"));
+
+        var state = ComposeRunner.runSteps(ctx, List.of(scope), new LinkedHashMap<>(), Map.of());
+        assertEquals(42, state.get("answer"));
+        assertEquals("bound", state.get("bound"));
+        assertTrue(registry.get("lcod://inline/answer@1") == null);
+        assertTrue(registry.resolveBinding("lcod://contract/demo/echo@1") == null);
+        assertSame(registry, ctx.registry());
+    }
+
+    @Test
+    void registryScopeSendsChildRegistrationsToTheOuterRegistry() throws Exception {
+        var registry = baseRegistry();
+        registry.register("test://register@1", (ctx, input, meta) -> {
+            ctx.registry().register("lcod://registered/answer@1", (inner, in, m) -> Map.of("answer", 7));
+            return Map.of();
+        });
+        var ctx = new ExecutionContext(registry);
+
+        var scope = new LinkedHashMap<String, Object>();
+        scope.put("call", "lcod://tooling/registry/scope@1");
+        scope.put("in", Map.of("components", List.of(Map.of(
+            "id", "lcod://inline/answer@1",
+            "compose", List.of(Map.of("call", "lcod://impl/set@1", "in", Map.of("answer", 42), "out", Map.of("answer", "answer")))
+        ))));
+        scope.put("children", List.of(
+            Map.of("call", "test://register@1"),
+            Map.of("call", "lcod://registered/answer@1", "out", Map.of("answer", "answer"))
+        ));
+        scope.put("out", Map.of("answer", "answer"));
+
+        var state = ComposeRunner.runSteps(ctx, List.of(scope), new LinkedHashMap<>(), Map.of());
+        assertEquals(7, state.get("answer"));
+        assertTrue(registry.get("lcod://registered/answer@1") != null);
+        assertTrue(registry.get("lcod://inline/answer@1") == null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void logsFromParallelBranchesReachTheCapture() throws Exception {
+        var ctx = new ExecutionContext(baseRegistry());
+
+        var parallel = new LinkedHashMap<String, Object>();
+        parallel.put("call", "lcod://flow/parallel@1");
+        parallel.put("in", Map.of("tasks", List.of("a", "b", "c"), "concurrency", 3));
+        parallel.put("slots", Map.of(
+            "tasks", List.of(Map.of(
+                "call", "lcod://contract/tooling/log@1",
+                "in", Map.of("message", "$slot.item")
+            ))
+        ));
+        var scope = new LinkedHashMap<String, Object>();
+        scope.put("call", "lcod://tooling/registry/scope@1");
+        scope.put("in", Map.of("components", List.of(Map.of("id", "lcod://impl/testing/log-captured@1"))));
+        scope.put("children", List.of(
+            parallel,
+            Map.of("call", "lcod://impl/testing/log-captured@1", "out", Map.of("logs", "$"))
+        ));
+        scope.put("out", Map.of("logs", "logs"));
+
+        var state = ComposeRunner.runSteps(ctx, List.of(scope), new LinkedHashMap<>(), Map.of());
+        var messages = new java.util.TreeSet<Object>();
+        for (var log : (List<Map<String, Object>>) state.get("logs")) {
+            messages.add(log.get("message"));
+        }
+        assertEquals(new java.util.TreeSet<>(List.of("a", "b", "c")), messages);
+    }
+
+    @Test
+    void scriptTimeoutInterruptsRunawayScripts() throws Exception {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        var step = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of("source", "() => { while (true) {} }", "timeoutMs", 100),
+            "out", Map.of("result", "$")
+        );
+
+        var error = assertThrows(FlowErrorException.class,
+            () -> ComposeRunner.runSteps(ctx, List.of(step), new LinkedHashMap<>(), Map.of()));
+        assertEquals("script_timeout", error.code());
+
+        var quick = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of("source", "() => ({ ok: true })", "timeoutMs", 1000),
+            "out", Map.of("result", "ok")
+        );
+        var state = ComposeRunner.runSteps(ctx, List.of(quick), new LinkedHashMap<>(), Map.of());
+        assertEquals(true, state.get("result"));
+    }
+
+    @Test
+    void scriptMutationsStayOnTheScriptSide() throws Exception {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        var items = new java.util.ArrayList<Object>(List.of(1, 2, 3));
+        var nested = new LinkedHashMap<String, Object>(Map.of("flag", false));
+        var step = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of(
+                "source", "({ state }) => { state.items.push(4); state.nested.flag = true;"
+                    + " return { count: state.items.length, flag: state.nested.flag, items: state.items }; }",
+                "input", Map.of("items", items, "nested", nested)
+            ),
+            "out", Map.of("count", "count", "flag", "flag", "items", "items")
+        );
+
+        var state = ComposeRunner.runSteps(ctx, List.of(step), new LinkedHashMap<>(), Map.of());
+        assertEquals(4, state.get("count"));
+        assertEquals(true, state.get("flag"));
+        assertEquals(List.of(1, 2, 3, 4), state.get("items"));
+        assertEquals(List.of(1, 2, 3), items);
+        assertEquals(false, nested.get("flag"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void scriptSessionsAreReusedAcrossCalls() throws Exception {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        // A tools signature of its own keeps sessions left by other tests out of the count.
+        var step = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of(
+                "source", "({ state }) => ({ doubled: state.value * 2 })",
+                "input", Map.of("value", 21),
+                "tools", List.of(Map.of("name", "reuseProbe", "source", "() => 1"))
+            ),
+            "out", Map.of("doubled", "doubled")
+        );
+
+        long hitsBefore = poolCounter("hits");
+        for (int i = 0; i < 3; i++) {
+            var state = ComposeRunner.runSteps(ctx, List.of(step), new LinkedHashMap<>(), Map.of());
+            assertEquals(42, state.get("doubled"));
+        }
+        assertTrue(poolCounter("hits") - hitsBefore >= 2, "later calls should reuse the pooled session");
+    }
+
+    @Test
+    void scriptChangesToGlobalsDoNotLeakIntoLaterCalls() throws Exception {
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        var tools = List.of(Map.of("name", "isolationProbe", "source", "() => 1"));
+        var polluting = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of(
+                "source", "() => { globalThis.leaked = 1; Array.prototype.extra = 'x'; JSON.stringify = () => 'patched';"
+                    + " console.log = () => {}; process.env.LCOD_LEAKED = 'yes'; return {}; }",
+                "tools", tools
+            )
+        );
+        var probe = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of(
+                "source", "() => ({ leaked: typeof leaked, extra: typeof [].extra, json: JSON.stringify({ a: 1 }),"
+                    + " console: console.log.toString().includes('{}') ? 'patched' : 'kernel', env: typeof process.env.LCOD_LEAKED })",
+                "tools", tools
+            ),
+            "out", Map.of("leaked", "leaked", "extra", "extra", "json", "json", "console", "console", "env", "env")
+        );
+
+        ComposeRunner.runSteps(ctx, List.of(polluting), new LinkedHashMap<>(), Map.of());
+        var state = ComposeRunner.runSteps(ctx, List.of(probe), new LinkedHashMap<>(), Map.of());
+        assertEquals("undefined", state.get("leaked"));
+        assertEquals("undefined", state.get("extra"));
+        assertEquals("{\"a\":1}", state.get("json"));
+        assertEquals("kernel", state.get("console"));
+        assertEquals("undefined", state.get("env"));
+    }
+
+    @Test
+    void nestedScriptsOnForkedContextsDoNotWaitForThePool() throws Exception {
+        int poolSize = (int) poolCounter("maxSize");
+        // Every nested script must be running at once; the outer script already holds one pool slot.
+        var barrier = new java.util.concurrent.CyclicBarrier(poolSize);
+        var registry = KernelRegistry.create();
+        registry.register("test://barrier@1", (ctx, input, meta) -> {
+            barrier.await(10, java.util.concurrent.TimeUnit.SECONDS);
+            return Map.of("ok", true);
+        });
+        var tasks = new java.util.ArrayList<Object>();
+        for (int i = 0; i < poolSize; i++) {
+            tasks.add(i);
+        }
+        var parallel = new LinkedHashMap<String, Object>();
+        parallel.put("call", "lcod://flow/parallel@1");
+        parallel.put("in", Map.of("tasks", tasks, "concurrency", poolSize));
+        parallel.put("slots", Map.of("tasks", List.of(Map.of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of("source", "(scope, api) => api.call('test://barrier@1')")
+        ))));
+        registry.register("test://fanout@1", (ctx, input, meta) ->
+            ComposeRunner.runSteps(ctx, List.of(parallel), new LinkedHashMap<>(), Map.of()));
+        var ctx = new ExecutionContext(registry);
+        var outer = Map.<String, Object>of(
+            "call", "lcod://tooling/script@1",
+            "in", Map.of("source", "(scope, api) => { api.call('test://fanout@1'); return { done: true }; }"),
+            "out", Map.of("done", "done")
+        );
+
+        var state = ComposeRunner.runSteps(ctx, List.of(outer), new LinkedHashMap<>(), Map.of());
+        assertEquals(true, state.get("done"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long poolCounter(String name) {
+        var pool = (Map<String, Object>) ToolingPrimitives.scriptMetrics().get("pool");
+        return ((Number) pool.get(name)).longValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolveDependenciesWalksTheGraphInDeclarationOrder(@TempDir Path project) throws Exception {
+        writeDescriptor(project, "a", "lcod://demo/c@1");
+        writeDescriptor(project, "b", "lcod://demo/c@1", "lcod://core/ignored@1");
+        writeDescriptor(project, "c");
+        var input = new LinkedHashMap<String, Object>();
+        input.put("projectPath", project.toString());
+        input.put("rootDescriptor", Map.of("id", "lcod://demo/root@1",
+            "deps", Map.of("requires", List.of("lcod://demo/a@1", "lcod://demo/b@1"))));
+        input.put("config", Map.of("sources", Map.of(
+            "lcod://demo/a@1", Map.of("type", "path", "path", "a"),
+            "lcod://demo/b@1", Map.of("type", "path", "path", "b"),
+            "lcod://demo/c@1", Map.of("type", "path", "path", "c")
+        )));
+        var ctx = new ExecutionContext(KernelRegistry.create());
+
+        var output = (Map<String, Object>) ctx.call("lcod://contract/tooling/resolver/resolve_dependencies@1", input, null);
+        var root = (Map<String, Object>) ((Map<String, Object>) output.get("resolverResult")).get("root");
+        var deps = (List<Map<String, Object>>) root.get("dependencies");
+        assertEquals(List.of("lcod://demo/a@1", "lcod://demo/b@1"), deps.stream().map(dep -> dep.get("id")).toList());
+        for (var dep : deps) {
+            var children = (List<Map<String, Object>>) dep.get("dependencies");
+            assertEquals(List.of("lcod://demo/c@1"), children.stream().map(child -> child.get("id")).toList());
+            assertEquals(ResolverDescriptors.integrity(Files.readString(project.resolve("c/lcp.toml"))),
+                children.get(0).get("integrity"));
+        }
+
+        writeDescriptor(project, "c", "lcod://demo/a@1");
+        var cycle = assertThrows(IllegalArgumentException.class,
+            () -> ctx.call("lcod://contract/tooling/resolver/resolve_dependencies@1", input, null));
+        assertTrue(cycle.getMessage().contains("dependency cycle"));
+    }
+
+    @Test
+    void resolveDependenciesPersistsDescriptorsUnderTheCacheDir(@TempDir Path project) throws Exception {
+        writeDescriptor(project, "a");
+        var input = new LinkedHashMap<String, Object>();
+        input.put("projectPath", project.toString());
+        input.put("rootDescriptor", Map.of("id", "lcod://demo/root@1",
+            "deps", Map.of("requires", List.of("lcod://demo/a@1"))));
+        input.put("config", Map.of("sources", Map.of("lcod://demo/a@1", Map.of("type", "path", "path", "a"))));
+        var ctx = new ExecutionContext(KernelRegistry.create());
+        Path cacheFile = project.resolve(".lcod").resolve("cache").resolve(ResolverDescriptors.CACHE_FILE);
+
+        ctx.call("lcod://contract/tooling/resolver/resolve_dependencies@1", input, null);
+        String integrity = ResolverDescriptors.integrity(Files.readString(project.resolve("a/lcp.toml")));
+        assertTrue(Files.readString(cacheFile).contains(integrity));
+
+        writeDescriptor(project, "a", "lcod://core/ignored@1");
+        ctx.call("lcod://contract/tooling/resolver/resolve_dependencies@1", input, null);
+        String persisted = Files.readString(cacheFile);
+        assertTrue(persisted.contains(ResolverDescriptors.integrity(Files.readString(project.resolve("a/lcp.toml")))));
+        assertFalse(persisted.contains(integrity));
+        assertTrue(persisted.contains("lcod://core/ignored@1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resolveDependenciesDefaultsToTheRunDirectory(@TempDir Path project) throws Exception {
+        writeDescriptor(project, "a");
+        var input = new LinkedHashMap<String, Object>();
+        input.put("rootDescriptor", Map.of("id", "lcod://demo/root@1",
+            "deps", Map.of("requires", List.of("lcod://demo/a@1"))));
+        input.put("config", Map.of("sources", Map.of("lcod://demo/a@1", Map.of("type", "path", "path", "a"))));
+        var ctx = new ExecutionContext(KernelRegistry.create(), project);
+
+        ctx.call("lcod://contract/tooling/resolver/resolve_dependencies@1", input, null);
+        var cacheDir = (Map<String, Object>) ctx.call("lcod://tooling/resolver/cache-dir@1", Map.of(), null);
+
+        assertEquals(project.resolve(".lcod").resolve("cache").toString(), cacheDir.get("path"));
+        assertTrue(Files.isRegularFile(Path.of((String) cacheDir.get("path")).resolve(ResolverDescriptors.CACHE_FILE)));
+    }
+
+    private static void writeDescriptor(Path project, String name, String... requires) throws IOException {
+        Path dir = Files.createDirectories(project.resolve(name));
+        var builder = new StringBuilder("id = \"lcod://demo/" + name + "@1\"\n\n[deps]\nrequires = [");
+        for (int i = 0; i < requires.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append('"').append(requires[i]).append('"');
+        }
+        Files.writeString(dir.resolve("lcp.toml"), builder.append("]\n").toString());
+    }
 }